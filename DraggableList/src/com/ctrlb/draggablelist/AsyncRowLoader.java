@@ -0,0 +1,181 @@
+package com.ctrlb.draggablelist;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import android.os.Handler;
+import android.os.Looper;
+
+/**
+ * Prepares the values for rows on a background {@link Executor} and keeps
+ * the most recently used in a cache by item id, along with the view type they
+ * were prepared for. Used by
+ * {@link GenericAdapter} when binding asynchronously. All the methods must be
+ * called on the main thread.
+ * 
+ * @author philip brown
+ * 
+ */
+class AsyncRowLoader {
+
+    /**
+     * Callback used to prepare the rows and to tell the adapter when they are
+     * ready
+     */
+    static interface Callback {
+
+	/**
+	 * called on the background thread to prepare the values for a row
+	 * 
+	 * @param data
+	 *            the data provider to read from
+	 * @param position
+	 *            the position in the data provider
+	 * @param id
+	 *            the id of the item expected at the position
+	 * @param viewType
+	 *            the view type of the row
+	 * @return the values or null if the item is no longer at the position
+	 */
+	CharSequence[] prepareRow(TypedDataProvider data, int position, long id, int viewType);
+
+	/**
+	 * called on the main thread when a row has been prepared. The item may
+	 * have moved since it was requested, so it is given by id
+	 * 
+	 * @param id
+	 *            the id of the item prepared
+	 */
+	void onRowReady(long id);
+    }
+
+    private final Executor mExecutor;
+    private final Callback mCallback;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    /** the prepared rows by item id, in least recently used order */
+    private final LinkedHashMap<Long, PreparedRow> mCache;
+    /** the view types of the rows being prepared by item id */
+    private final HashMap<Long, Integer> mLoading = new HashMap<Long, Integer>();
+    /** incremented when the cache is cleared so older results are dropped */
+    private int mGeneration;
+
+    AsyncRowLoader(Executor executor, final int cacheSize, Callback callback) {
+	mExecutor = executor;
+	mCallback = callback;
+	mCache = new LinkedHashMap<Long, PreparedRow>(cacheSize + 1, 0.75f, true) {
+
+	    private static final long serialVersionUID = 1L;
+
+	    @Override
+	    protected boolean removeEldestEntry(Map.Entry<Long, PreparedRow> eldest) {
+		return size() > cacheSize;
+	    }
+	};
+    }
+
+    /**
+     * 
+     * @param id
+     * @param viewType
+     * @return the values prepared for the item with the view type or null if
+     *         they are not ready
+     */
+    CharSequence[] get(long id, int viewType) {
+	PreparedRow row = mCache.get(id);
+	return row != null && row.mViewType == viewType ? row.mValues : null;
+    }
+
+    /**
+     * 
+     * @param id
+     * @param viewType
+     * @return true if the item is prepared or being prepared for the view type
+     */
+    boolean contains(long id, int viewType) {
+	PreparedRow row = mCache.get(id);
+	if (row != null && row.mViewType == viewType)
+	    return true;
+	Integer loading = mLoading.get(id);
+	return loading != null && loading == viewType;
+    }
+
+    /**
+     * Starts preparing a row on the background thread if it is not prepared
+     * or being prepared
+     * 
+     * @param data
+     *            the data provider to read from
+     * @param dataPosition
+     *            the position in the data provider
+     * @param id
+     *            the id of the item
+     * @param viewType
+     *            the view type of the row
+     */
+    void request(final TypedDataProvider data, final int dataPosition, final long id, final int viewType) {
+	if (contains(id, viewType))
+	    return;
+
+	mLoading.put(id, viewType);
+	final int generation = mGeneration;
+
+	mExecutor.execute(new Runnable() {
+
+	    @Override
+	    public void run() {
+		final CharSequence[] values = mCallback.prepareRow(data, dataPosition, id, viewType);
+		mHandler.post(new Runnable() {
+
+		    @Override
+		    public void run() {
+			if (generation != mGeneration)
+			    return;
+			Integer loading = mLoading.get(id);
+			if (loading == null || loading != viewType)
+			    return;
+			mLoading.remove(id);
+			if (values != null) {
+			    mCache.put(id, new PreparedRow(viewType, values));
+			    mCallback.onRowReady(id);
+			}
+		    }
+		});
+	    }
+	});
+    }
+
+    /**
+     * Drops the prepared row for an item
+     * 
+     * @param id
+     */
+    void remove(long id) {
+	mCache.remove(id);
+    }
+
+    /**
+     * Drops all the prepared rows
+     */
+    void clear() {
+	mGeneration++;
+	mCache.clear();
+	mLoading.clear();
+    }
+
+    /**
+     * The values prepared for a row and the view type they were prepared for
+     */
+    private static class PreparedRow {
+
+	final int mViewType;
+	final CharSequence[] mValues;
+
+	PreparedRow(int viewType, CharSequence[] values) {
+	    mViewType = viewType;
+	    mValues = values;
+	}
+    }
+
+}
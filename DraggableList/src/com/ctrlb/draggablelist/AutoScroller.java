@@ -0,0 +1,272 @@
+package com.ctrlb.draggablelist;
+
+import android.widget.AbsListView;
+
+/**
+ * Scrolls a list while an item is dragged near its edges. Each axis is
+ * scrolled separately by a distance each frame that depends on how far into
+ * the edge the item has been dragged and how long it has been there. An
+ * {@link AbsListView} only scrolls vertically itself, the horizontal scrolling
+ * is left to the {@link Listener}.
+ * 
+ * @author philip brown
+ * 
+ */
+class AutoScroller implements FrameScheduler.Callback {
+
+    /** the time taken to ramp up to the full scroll speed */
+    static final long RAMP_UP_NANOS = 500 * 1000 * 1000L;
+    /** the longest frame used to work out the scroll distance */
+    static final long MAX_FRAME_NANOS = 50 * 1000 * 1000L;
+
+    /**
+     * Callback run after the list has been scrolled on each frame
+     */
+    static interface Listener {
+
+	/**
+	 * called once per frame while auto scrolling
+	 * 
+	 * @param dx
+	 *            the distance the list was scrolled horizontally, negative
+	 *            when scrolling left
+	 * @param dy
+	 *            the distance the list was scrolled, negative when
+	 *            scrolling up
+	 */
+	void onAutoScroll(int dx, int dy);
+
+	/**
+	 * 
+	 * @param right
+	 *            true to check scrolling right, false to check scrolling
+	 *            left
+	 * @return true if the list can be scrolled horizontally that way
+	 */
+	boolean canScrollHorizontally(boolean right);
+
+	/**
+	 * called to scroll the list horizontally
+	 * 
+	 * @param dx
+	 *            the distance to scroll, negative to scroll left
+	 */
+	void scrollHorizontallyBy(int dx);
+    }
+
+    private final AbsListView mListView;
+    private final Listener mListener;
+    private final FrameScheduler mFrameScheduler;
+    /** the size of the area at the top and bottom that starts scrolling */
+    private int mEdgeSize;
+    /** the fastest the list will scroll in pixels per second */
+    private int mMaxSpeed;
+    /** where the item is being dragged to */
+    private int mX;
+    private int mY;
+    /** the time the list started scrolling */
+    private long mStartTimeNanos;
+    /** the time of the last frame */
+    private long mLastFrameNanos;
+    /** the scroll distances left over from the last frame */
+    private float mRemainderX;
+    private float mRemainderY;
+    private boolean mScrolling;
+
+    AutoScroller(AbsListView listView, Listener listener, int edgeSize, int maxSpeed) {
+	mListView = listView;
+	mListener = listener;
+	mEdgeSize = edgeSize;
+	mMaxSpeed = maxSpeed;
+	mFrameScheduler = FrameScheduler.create(listView, this);
+    }
+
+    void setEdgeSize(int edgeSize) {
+	mEdgeSize = edgeSize;
+    }
+
+    int getEdgeSize() {
+	return mEdgeSize;
+    }
+
+    void setMaxSpeed(int maxSpeed) {
+	mMaxSpeed = maxSpeed;
+    }
+
+    int getMaxSpeed() {
+	return mMaxSpeed;
+    }
+
+    /**
+     * 
+     * @return true while the list is being scrolled
+     */
+    boolean isScrolling() {
+	return mScrolling;
+    }
+
+    /**
+     * Update where the item is being dragged to, starting or stopping the
+     * scrolling if it has moved in to or out of an edge
+     * 
+     * @param x
+     *            the x coordinate in the list
+     * @param y
+     *            the y coordinate in the list
+     */
+    void update(int x, int y) {
+	mX = x;
+	mY = y;
+	// only an edge the list can scroll towards starts scrolling, otherwise
+	// the first frame would stop it again
+	if (getScrollDepthX() == 0 && getScrollDepthY() == 0) {
+	    stop();
+	} else if (!mScrolling) {
+	    mScrolling = true;
+	    mStartTimeNanos = System.nanoTime();
+	    mLastFrameNanos = mStartTimeNanos;
+	    mRemainderX = 0;
+	    mRemainderY = 0;
+	    mFrameScheduler.schedule();
+	}
+    }
+
+    /**
+     * Stops scrolling the list
+     */
+    void stop() {
+	if (mScrolling) {
+	    mScrolling = false;
+	    mFrameScheduler.cancel();
+	    // stop any scroll still running
+	    mListView.smoothScrollBy(0, 0);
+	}
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+
+	if (!mScrolling)
+	    return;
+
+	float depthX = getScrollDepthX();
+	float depthY = getScrollDepthY();
+	if (depthX == 0 && depthY == 0) {
+	    stop();
+	    return;
+	}
+
+	long frameNanos = Math.min(Math.max(frameTimeNanos - mLastFrameNanos, 0), MAX_FRAME_NANOS);
+	mLastFrameNanos = frameTimeNanos;
+
+	// faster the deeper into the edge and the longer it has been scrolling
+	float ramp = Math.min(1f, (float) (frameTimeNanos - mStartTimeNanos) / RAMP_UP_NANOS);
+	float speed = ramp * mMaxSpeed * frameNanos / 1000000000f;
+
+	float distanceX = mRemainderX + depthX * Math.abs(depthX) * speed;
+	int dx = (int) distanceX;
+	mRemainderX = distanceX - dx;
+	float distanceY = mRemainderY + depthY * Math.abs(depthY) * speed;
+	int dy = (int) distanceY;
+	mRemainderY = distanceY - dy;
+
+	if (dx != 0) {
+	    mListener.scrollHorizontallyBy(dx);
+	}
+	if (dy != 0) {
+	    mListView.smoothScrollBy(dy, 0);
+	}
+	mListener.onAutoScroll(dx, dy);
+
+	mFrameScheduler.schedule();
+    }
+
+    /**
+     * 
+     * @return the depth into the left or right edge, or 0 if the list can not
+     *         scroll that way
+     */
+    private float getScrollDepthX() {
+	float depth = getDepthX();
+	if (depth != 0 && !mListener.canScrollHorizontally(depth > 0))
+	    return 0;
+	return depth;
+    }
+
+    /**
+     * 
+     * @return the depth into the top or bottom edge, or 0 if the list can not
+     *         scroll that way
+     */
+    private float getScrollDepthY() {
+	float depth = getDepthY();
+	if (depth != 0 && !canScroll(depth > 0))
+	    return 0;
+	return depth;
+    }
+
+    /**
+     * 
+     * @return how far into an edge the item is as a fraction of the edge size,
+     *         negative for the left edge and positive for the right edge
+     */
+    private float getDepthX() {
+	return getDepth(mX, mListView.getPaddingLeft(), mListView.getWidth() - mListView.getPaddingRight());
+    }
+
+    /**
+     * 
+     * @return how far into an edge the item is as a fraction of the edge size,
+     *         negative for the top edge and positive for the bottom edge
+     */
+    private float getDepthY() {
+	return getDepth(mY, mListView.getPaddingTop(), mListView.getHeight() - mListView.getPaddingBottom());
+    }
+
+    /**
+     * 
+     * @param position
+     *            where the item is on the axis
+     * @param start
+     *            the start of the list on the axis
+     * @param end
+     *            the end of the list on the axis
+     * @return how far into an edge the item is as a fraction of the edge size,
+     *         negative for the start edge and positive for the end edge
+     */
+    private float getDepth(int position, int start, int end) {
+	if (mEdgeSize <= 0)
+	    return 0;
+
+	start += mEdgeSize;
+	end -= mEdgeSize;
+
+	if (position < start) {
+	    return -Math.min(1f, (float) (start - position) / mEdgeSize);
+	} else if (position > end) {
+	    return Math.min(1f, (float) (position - end) / mEdgeSize);
+	}
+	return 0;
+    }
+
+    /**
+     * 
+     * @param down
+     *            true to check scrolling down, false to check scrolling up
+     * @return true if there is more of the list to scroll to
+     */
+    private boolean canScroll(boolean down) {
+	int childCount = mListView.getChildCount();
+	if (childCount == 0)
+	    return false;
+
+	if (down) {
+	    return mListView.getFirstVisiblePosition() + childCount < mListView.getCount()
+		    || mListView.getChildAt(childCount - 1).getBottom() > mListView.getHeight()
+			    - mListView.getPaddingBottom();
+	}
+	return mListView.getFirstVisiblePosition() > 0
+		|| mListView.getChildAt(0).getTop() < mListView.getPaddingTop();
+    }
+
+}
@@ -0,0 +1,30 @@
+package com.ctrlb.draggablelist;
+
+/**
+ * Interface used to allow several items to be moved together in the
+ * underlying data set with a single call. When the data provider implements
+ * this {@link DraggableGenericAdapter} calls
+ * {@link #moveBatch(int[], int)} once when a selection of items is dropped,
+ * otherwise it moves each of the items in turn.
+ * 
+ * @author philip brown
+ * 
+ */
+
+public interface BatchMoveableDataProvider extends MoveableDataProvider {
+
+    /**
+     * This method will be invoked to move the data. The data at each of the
+     * positions is removed and inserted, in the same order, as a block
+     * starting at the target. The rest of the data keeps its order
+     * 
+     * @param from
+     *            the positions in the data set the data is moved from in
+     *            ascending order
+     * @param to
+     *            the position in the data set the first item ends up at once
+     *            the data has been moved
+     */
+    public void moveBatch(int[] from, int to);
+
+}
@@ -0,0 +1,197 @@
+package com.ctrlb.draggablelist;
+
+import java.util.ArrayList;
+
+import android.content.ComponentCallbacks2;
+import android.graphics.Bitmap;
+import android.graphics.Color;
+
+/**
+ * A small pool of bitmaps that {@link DraggableListView} borrows from to draw
+ * the view being dragged, so starting a drag does not allocate a new bitmap.
+ * A bitmap is reused for any request that fits inside it, the smallest one
+ * that fits is chosen. When the bitmaps held go over the maximum size the
+ * largest are dropped.
+ * 
+ * @author philip brown
+ * 
+ */
+public class BitmapPool {
+
+    /** the maximum size used if none is given */
+    public static final int DEFAULT_MAX_BYTES = 4 * 1024 * 1024;
+
+    private final ArrayList<Bitmap> mBitmaps = new ArrayList<Bitmap>();
+    private int mMaxBytes;
+    private long mBytesHeld;
+    private int mHits;
+    private int mMisses;
+
+    /**
+     * Constructor for a pool holding up to {@link #DEFAULT_MAX_BYTES}
+     */
+    public BitmapPool() {
+	this(DEFAULT_MAX_BYTES);
+    }
+
+    /**
+     * Constructor
+     * 
+     * @param maxBytes
+     *            the maximum size of the bitmaps held by the pool
+     */
+    public BitmapPool(int maxBytes) {
+	mMaxBytes = maxBytes;
+    }
+
+    /**
+     * Gets a cleared bitmap at least as large as the size given, from the pool
+     * if one fits otherwise a new one
+     * 
+     * @param width
+     * @param height
+     * @return the bitmap. It should be returned with
+     *         {@link #release(Bitmap)} when no longer needed
+     */
+    public synchronized Bitmap acquire(int width, int height) {
+
+	int best = -1;
+	long bestBytes = Long.MAX_VALUE;
+
+	for (int i = 0; i < mBitmaps.size(); i++) {
+	    Bitmap bitmap = mBitmaps.get(i);
+	    if (bitmap.getWidth() >= width && bitmap.getHeight() >= height) {
+		long bytes = getBytes(bitmap);
+		if (bytes < bestBytes) {
+		    best = i;
+		    bestBytes = bytes;
+		}
+	    }
+	}
+
+	if (best == -1) {
+	    mMisses++;
+	    return Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+	}
+
+	mHits++;
+	Bitmap bitmap = mBitmaps.remove(best);
+	mBytesHeld -= bestBytes;
+	bitmap.eraseColor(Color.TRANSPARENT);
+	return bitmap;
+    }
+
+    /**
+     * Returns a bitmap to the pool so it can be reused
+     * 
+     * @param bitmap
+     */
+    public synchronized void release(Bitmap bitmap) {
+	if (bitmap == null || bitmap.isRecycled())
+	    return;
+
+	long bytes = getBytes(bitmap);
+	if (bytes > mMaxBytes) {
+	    bitmap.recycle();
+	    return;
+	}
+
+	mBitmaps.add(bitmap);
+	mBytesHeld += bytes;
+	trimToSize(mMaxBytes);
+    }
+
+    /**
+     * Changes the maximum size of the bitmaps held by the pool, dropping
+     * bitmaps if needed
+     * 
+     * @param maxBytes
+     */
+    public synchronized void setMaxBytes(int maxBytes) {
+	mMaxBytes = maxBytes;
+	trimToSize(maxBytes);
+    }
+
+    /**
+     * 
+     * @return the maximum size of the bitmaps held by the pool
+     */
+    public synchronized int getMaxBytes() {
+	return mMaxBytes;
+    }
+
+    /**
+     * Releases memory in response to
+     * {@link ComponentCallbacks2#onTrimMemory(int)}. The pool is emptied if
+     * the app is in the background or memory is critical, and halved if the
+     * UI is hidden or memory is low
+     * 
+     * @param level
+     *            the level passed to onTrimMemory
+     */
+    public synchronized void trimMemory(int level) {
+	if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND
+		|| level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+	    clear();
+	} else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+	    trimToSize(mMaxBytes / 2);
+	}
+    }
+
+    /**
+     * Recycles all the bitmaps held by the pool
+     */
+    public synchronized void clear() {
+	trimToSize(0);
+    }
+
+    /**
+     * 
+     * @return the number of times a bitmap was reused from the pool
+     */
+    public synchronized int getHitCount() {
+	return mHits;
+    }
+
+    /**
+     * 
+     * @return the number of times a new bitmap had to be created
+     */
+    public synchronized int getMissCount() {
+	return mMisses;
+    }
+
+    /**
+     * 
+     * @return the size of the bitmaps held by the pool
+     */
+    public synchronized long getBytesHeld() {
+	return mBytesHeld;
+    }
+
+    /**
+     * Recycles the largest bitmaps until the bitmaps held fit in the size
+     * given
+     * 
+     * @param maxBytes
+     */
+    private void trimToSize(long maxBytes) {
+	while (mBytesHeld > maxBytes && !mBitmaps.isEmpty()) {
+	    int largest = 0;
+	    for (int i = 1; i < mBitmaps.size(); i++) {
+		if (getBytes(mBitmaps.get(i)) > getBytes(mBitmaps.get(largest))) {
+		    largest = i;
+		}
+	    }
+	    Bitmap bitmap = mBitmaps.remove(largest);
+	    mBytesHeld -= getBytes(bitmap);
+	    bitmap.recycle();
+	}
+    }
+
+    private static long getBytes(Bitmap bitmap) {
+	// getByteCount() needs API 12
+	return (long) bitmap.getRowBytes() * bitmap.getHeight();
+    }
+
+}
@@ -0,0 +1,140 @@
+package com.ctrlb.draggablelist;
+
+import android.view.View;
+import android.widget.AbsListView;
+import android.widget.AdapterView;
+import android.widget.GridView;
+
+/**
+ * Finds the cell under a point in an {@link AbsListView} that lays its items
+ * out in rows of cells, such as a {@link GridView}. The bounds of the visible
+ * cells are cached and refreshed after the list is laid out or scrolled. The
+ * row is found by binary search over the tops of the cells, which are laid
+ * out in order, then the cell by its left and right edges within the row.
+ * 
+ * @author philip brown
+ * 
+ */
+class CellHitTester implements HitTester {
+
+    private final AbsListView mListView;
+    private int[] mLefts = new int[0];
+    private int[] mTops = new int[0];
+    private int[] mRights = new int[0];
+    private int[] mBottoms = new int[0];
+    /** the number of visible cells in the cache */
+    private int mChildCount;
+    /** the position of the first visible cell in the cache */
+    private int mFirstPosition;
+    /** the top of the first visible cell in the cache, changes on scroll */
+    private int mFirstTop;
+    private boolean mValid;
+
+    CellHitTester(AbsListView listView) {
+	mListView = listView;
+    }
+
+    @Override
+    public void invalidate() {
+	mValid = false;
+    }
+
+    /**
+     * @return the position of the cell under the point or
+     *         {@link AdapterView#INVALID_POSITION} if the point is between
+     *         cells or outside them
+     */
+    @Override
+    public int positionAt(int x, int y) {
+	refresh();
+
+	int index = indexAt(x, y);
+	if (index == -1 || x < mLefts[index] || x >= mRights[index] || y < mTops[index] || y >= mBottoms[index])
+	    return AdapterView.INVALID_POSITION;
+	return mFirstPosition + index;
+    }
+
+    /**
+     * Points between cells give the cell to their left or above, points
+     * outside the cells give the nearest cell in the nearest row
+     */
+    @Override
+    public int targetAt(int x, int y, int current) {
+	refresh();
+
+	if (mChildCount == 0 || mListView.getCount() == 0)
+	    return AdapterView.INVALID_POSITION;
+
+	int index = indexAt(x, y);
+	if (index == -1) {
+	    // above the first row
+	    index = indexAt(x, mTops[0]);
+	}
+	return Math.min(mFirstPosition + index, mListView.getCount() - 1);
+    }
+
+    /**
+     * 
+     * @param x
+     * @param y
+     * @return the index of the last visible cell in the last row whose top is
+     *         at or above y that starts at or left of x, the first cell of the
+     *         row if x is left of them all, or -1 if y is above all the rows
+     */
+    private int indexAt(int x, int y) {
+	// the last cell whose top is at or above y is the end of its row
+	int low = 0;
+	int high = mChildCount - 1;
+	int end = -1;
+	while (low <= high) {
+	    int mid = (low + high) >>> 1;
+	    if (mTops[mid] <= y) {
+		end = mid;
+		low = mid + 1;
+	    } else {
+		high = mid - 1;
+	    }
+	}
+	if (end == -1)
+	    return -1;
+
+	int index = end;
+	while (index > 0 && mTops[index - 1] == mTops[end] && mLefts[index] > x) {
+	    index--;
+	}
+	return index;
+    }
+
+    /**
+     * Copies the bounds of the visible cells if the list has been laid out or
+     * scrolled since they were last copied
+     */
+    private void refresh() {
+	int childCount = mListView.getChildCount();
+	int firstPosition = mListView.getFirstVisiblePosition();
+	int firstTop = childCount == 0 ? 0 : mListView.getChildAt(0).getTop();
+
+	if (mValid && childCount == mChildCount && firstPosition == mFirstPosition && firstTop == mFirstTop)
+	    return;
+
+	if (mTops.length < childCount) {
+	    mLefts = new int[childCount];
+	    mTops = new int[childCount];
+	    mRights = new int[childCount];
+	    mBottoms = new int[childCount];
+	}
+	for (int i = 0; i < childCount; i++) {
+	    View child = mListView.getChildAt(i);
+	    mLefts[i] = child.getLeft();
+	    mTops[i] = child.getTop();
+	    mRights[i] = child.getRight();
+	    mBottoms[i] = child.getBottom();
+	}
+
+	mChildCount = childCount;
+	mFirstPosition = firstPosition;
+	mFirstTop = firstTop;
+	mValid = true;
+    }
+
+}
@@ -0,0 +1,1121 @@
+package com.ctrlb.draggablelist;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.ViewConfiguration;
+import android.view.animation.TranslateAnimation;
+import android.widget.AbsListView;
+import android.widget.AbsListView.OnScrollListener;
+import android.widget.AdapterView;
+import android.widget.ListView;
+
+/**
+ * The drag and drop engine shared by {@link DraggableListView} and
+ * {@link DraggableGridView}. It works with any {@link AbsListView} showing a
+ * {@link DraggableGenericAdapter}: the view creates a controller and passes
+ * it its touch events, layout passes and drawing, see
+ * {@link DraggableGridView} for the calls needed.
+ * <p>
+ * A {@link ListView} is hit tested by row, any other list by cell in both
+ * directions. The list is auto scrolled on each axis when the item is dragged
+ * near its edges, an {@link AbsListView} only scrolls vertically itself so
+ * {@link #canScrollHorizontally(boolean)} and {@link #scrollHorizontallyBy(int)}
+ * can be overridden for one that scrolls horizontally. When the item being
+ * dragged passes other items they can be animated sliding into their new
+ * cells, see {@link #setSwapAnimationDuration(long)}. A {@link ListView} can
+ * instead move the rows out of the way of the item being dragged without
+ * changing the data until it is dropped, see {@link #setDisplaceRows(boolean)}.
+ * The drag buttons and the placeholder can be drawn over the rows instead of
+ * added to them as views, see {@link #setDrawOverlays(boolean)}.
+ * 
+ * @author philip brown
+ * 
+ */
+public class DragController {
+
+    /** the default size of the edges that start auto scrolling in dp */
+    static final int DEFAULT_AUTO_SCROLL_EDGE_DP = 64;
+    /** the default fastest auto scroll speed in dp per second */
+    static final int DEFAULT_AUTO_SCROLL_SPEED_DP = 1600;
+    /** the offset between the rows of the stack drawn for a selection in dp */
+    static final int STACK_OFFSET_DP = 6;
+    /** the most rows drawn in the stack for a selection */
+    static final int MAX_STACK_ROWS = 3;
+    /** the size of the text counting the items in a selection in sp */
+    static final int STACK_COUNT_TEXT_SP = 16;
+    /** the default number of rows loaded ahead of the scroll direction */
+    static final int DEFAULT_PREFETCH_DISTANCE = 10;
+    /** the time taken by the cell swap animation used by the grid */
+    public static final long DEFAULT_SWAP_ANIMATION_MS = 150;
+    /** the time taken to move a row out of the way when displacing rows */
+    public static final long DEFAULT_DISPLACE_ANIMATION_MS = 150;
+
+    private static final int INVALID_POSITION = AdapterView.INVALID_POSITION;
+
+    /** the list the items are dragged in */
+    private final AbsListView mView;
+    /** whether the list view should respond to drag gestures */
+    private boolean mIsDragging = false;
+    /** the adapter for the list data */
+    private DraggableGenericAdapter mAdapter;
+    /**
+     * scrolls the list once per frame when the item is dragged near the edges
+     * of the list
+     */
+    private final AutoScroller mAutoScroller;
+    /** the last x coordinate of the drag */
+    private int mTouchX;
+    /** the last y coordinate of the drag */
+    private int mTouchY;
+    /** the time of the last touch sample used for the drag velocity */
+    private long mTouchTime;
+    /** the smoothed speed of the drag in pixels per second */
+    private float mTouchVelocityY;
+    /** loads the rows ahead of the direction the list is scrolling */
+    private final Prefetcher mPrefetcher = new Prefetcher(DEFAULT_PREFETCH_DISTANCE);
+    /** the scroll listener set by the user, called after the prefetcher */
+    private OnScrollListener mOnScrollListener;
+    /** the scroll listener the view should set on itself */
+    private final OnScrollListener mScrollListener;
+    /** applies the latest drag position once per frame */
+    private final FrameScheduler mDragFrameScheduler;
+    /** finds the item under a point */
+    private final HitTester mHitTester;
+    /** true if the floating view follows the drag horizontally as well */
+    private final boolean mFollowX;
+    /**
+     * The bitmap the view being dragged is drawn into. It is borrowed from
+     * mBitmapPool when the drag starts and returned when it stops
+     */
+    private Bitmap mDragBitmap;
+    /** the pool the bitmap for the view being dragged is borrowed from */
+    private BitmapPool mBitmapPool = new BitmapPool();
+    /** the canvas used to draw into mDragBitmap */
+    private final Canvas mDragCanvas = new Canvas();
+    /** the paint used to draw the floating view with the hover alpha */
+    private final Paint mDragPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    /** the area of mDragBitmap holding the view being dragged */
+    private final Rect mDragSrcRect = new Rect();
+    /** where the floating view is drawn in the list */
+    private final Rect mDragDstRect = new Rect();
+    /** true if the floating view is being drawn over the list */
+    private boolean mDragViewShown;
+    /** the width of the view being dragged */
+    private int mDragViewWidth;
+    /** the height of the view being dragged */
+    private int mDragViewHeight;
+
+    /** the paint used to draw the rows behind the top of a selection stack */
+    private final Paint mStackPaint = new Paint();
+    /** the paint used to draw the number of items in a selection */
+    private final Paint mStackCountPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    /** the offset between the rows of a selection stack */
+    private final int mStackOffset;
+    /** the position of a tap that may toggle the selection of a row */
+    private int mTapPosition = INVALID_POSITION;
+    /** where the tap started */
+    private int mTapX;
+    private int mTapY;
+    /** the distance a touch can move and still be a tap */
+    private final int mTouchSlop;
+
+    /** measures the drag, null if nothing is measured */
+    private DragMetricsListener mMetricsListener;
+    /** when the current layout pass started, if it is being measured */
+    private long mLayoutStart;
+
+    /** true if the view is being dragged */
+    private boolean mDragStarted;
+    /** the color the background of the floating view will be set to */
+    private int mHoverColor = Color.GREEN;
+    /**
+     * the alpha the floating view will be set to 1.0 = opaque 0.0 = transparent
+     */
+    private float mHoverAlpha = 0.5f;
+    /** the first position of the rows waiting to be rebound */
+    private int mRebindFrom = INVALID_POSITION;
+    /** the last position of the rows waiting to be rebound */
+    private int mRebindTo = INVALID_POSITION;
+    /** true if the drag overlays of the visible rows need updating */
+    private boolean mRefreshOverlays;
+
+    /** the time taken to slide a passed item into its new cell, 0 for none */
+    private long mSwapAnimationDuration;
+    /**
+     * the position the item being dragged was shown at when the list was last
+     * laid out, the items it has passed since are animated
+     */
+    private int mSwapFrom = INVALID_POSITION;
+    /** the position the item being dragged is shown at now */
+    private int mSwapTo = INVALID_POSITION;
+
+    /** true if the drag buttons and placeholder are drawn over the rows */
+    private boolean mDrawOverlays;
+    /** where the drag buttons and placeholder are drawn */
+    private final Rect mOverlayRect = new Rect();
+
+    /** true if the rows are displaced while dragging in a list */
+    private boolean mDisplaceRows;
+    /** the time taken to move a displaced row, 0 for none */
+    private long mDisplaceAnimationDuration = DEFAULT_DISPLACE_ANIMATION_MS;
+    /**
+     * true while the rows are displaced for a drag. The adapter is only told
+     * where the item is dropped, until then the rows are not rebound
+     */
+    private boolean mDisplacing;
+    /** the position the item being dragged started at while displacing */
+    private int mDisplaceStart;
+    /** the position the item being dragged is shown at while displacing */
+    private int mDisplaceHover;
+    /** the height of the row being dragged and its divider */
+    private int mDisplaceHeight;
+
+    /**
+     * Constructor, should be called by the view when it is created
+     * 
+     * @param view
+     *            the list the items are dragged in. It must set
+     *            {@link #getScrollListener()} as its scroll listener
+     */
+    public DragController(AbsListView view) {
+	mView = view;
+	mHitTester = view instanceof ListView ? new RowHitTester((ListView) view) : new CellHitTester(view);
+	mFollowX = !(view instanceof ListView);
+
+	mDragFrameScheduler = FrameScheduler.create(view, new FrameScheduler.Callback() {
+
+	    @Override
+	    public void doFrame(long frameTimeNanos) {
+		updateDrag();
+	    }
+	});
+
+	float density = view.getResources().getDisplayMetrics().density;
+	mStackOffset = (int) (STACK_OFFSET_DP * density);
+	mStackCountPaint.setTextSize(STACK_COUNT_TEXT_SP * view.getResources().getDisplayMetrics().scaledDensity);
+	mStackCountPaint.setColor(Color.WHITE);
+	mTouchSlop = ViewConfiguration.get(view.getContext()).getScaledTouchSlop();
+	mAutoScroller = new AutoScroller(view, new AutoScroller.Listener() {
+
+	    @Override
+	    public void onAutoScroll(int dx, int dy) {
+		// the list has moved under the item being dragged
+		if (mMetricsListener != null) {
+		    mMetricsListener.onAutoScroll(dy);
+		}
+		updateHover();
+		mPrefetcher.onAutoScroll(mView.getFirstVisiblePosition() - getHeaderCount(), mView.getChildCount(), dy);
+	    }
+
+	    @Override
+	    public boolean canScrollHorizontally(boolean right) {
+		return DragController.this.canScrollHorizontally(right);
+	    }
+
+	    @Override
+	    public void scrollHorizontallyBy(int dx) {
+		DragController.this.scrollHorizontallyBy(dx);
+	    }
+	}, (int) (DEFAULT_AUTO_SCROLL_EDGE_DP * density), (int) (DEFAULT_AUTO_SCROLL_SPEED_DP * density));
+
+	mScrollListener = new OnScrollListener() {
+
+	    @Override
+	    public void onScrollStateChanged(AbsListView view, int scrollState) {
+		if (mOnScrollListener != null) {
+		    mOnScrollListener.onScrollStateChanged(view, scrollState);
+		}
+	    }
+
+	    @Override
+	    public void onScroll(AbsListView view, int firstVisibleItem, int visibleItemCount, int totalItemCount) {
+		mPrefetcher.onScroll(firstVisibleItem - getHeaderCount(), visibleItemCount);
+		if (mDisplacing) {
+		    // rows scrolled into view are displaced straight away
+		    applyDisplacements();
+		}
+		if (mOnScrollListener != null) {
+		    mOnScrollListener.onScroll(view, firstVisibleItem, visibleItemCount, totalItemCount);
+		}
+	    }
+	};
+    }
+
+    /**
+     * 
+     * @return the scroll listener the view must set on itself with its super
+     *         class's setOnScrollListener, it calls the listener given to
+     *         {@link #setOnScrollListener(OnScrollListener)}
+     */
+    public OnScrollListener getScrollListener() {
+	return mScrollListener;
+    }
+
+    /**
+     * Sets the listener that will receive notifications every time the list
+     * scrolls, should be called by the view's setOnScrollListener
+     * 
+     * @param l
+     */
+    public void setOnScrollListener(OnScrollListener l) {
+	mOnScrollListener = l;
+    }
+
+    /**
+     * Sets the adapter, should be called by the view's setAdapter
+     * 
+     * @param adapter
+     */
+    public void setAdapter(DraggableGenericAdapter adapter) {
+	if (mAdapter != null) {
+	    mAdapter.setDragController(null);
+	}
+	mAdapter = adapter;
+	if (adapter != null) {
+	    adapter.setDragController(this);
+	    adapter.setMetricsListener(mMetricsListener);
+	    adapter.setDrawOverlays(mDrawOverlays);
+	}
+	mPrefetcher.setAdapter(adapter);
+    }
+
+    /**
+     * @see DraggableListView#setPrefetchDistance(int)
+     * @param distance
+     */
+    public void setPrefetchDistance(int distance) {
+	mPrefetcher.setDistance(distance);
+    }
+
+    /**
+     * @see DraggableListView#setAutoScrollEdgeSize(int)
+     * @param edgeSize
+     */
+    public void setAutoScrollEdgeSize(int edgeSize) {
+	mAutoScroller.setEdgeSize(edgeSize);
+    }
+
+    /**
+     * @see DraggableListView#setAutoScrollMaxSpeed(int)
+     * @param maxSpeed
+     */
+    public void setAutoScrollMaxSpeed(int maxSpeed) {
+	mAutoScroller.setMaxSpeed(maxSpeed);
+    }
+
+    /**
+     * @see DraggableListView#setHoverColor(int)
+     * @param hoverColor
+     */
+    public void setHoverColor(int hoverColor) {
+	mHoverColor = hoverColor;
+    }
+
+    /**
+     * @see DraggableListView#setHoverAlpha(float)
+     * @param hoverAlpha
+     */
+    public void setHoverAlpha(float hoverAlpha) {
+	mHoverAlpha = hoverAlpha;
+    }
+
+    /**
+     * @see DraggableListView#setBitmapPool(BitmapPool)
+     * @param bitmapPool
+     */
+    public void setBitmapPool(BitmapPool bitmapPool) {
+	mBitmapPool = bitmapPool;
+    }
+
+    /**
+     * @see DraggableListView#getBitmapPool()
+     * @return the {@link BitmapPool}
+     */
+    public BitmapPool getBitmapPool() {
+	return mBitmapPool;
+    }
+
+    /**
+     * @see DraggableListView#setMetricsListener(DragMetricsListener)
+     * @param listener
+     */
+    public void setMetricsListener(DragMetricsListener listener) {
+	mMetricsListener = listener;
+	if (mAdapter != null) {
+	    mAdapter.setMetricsListener(listener);
+	}
+    }
+
+    /**
+     * Set the time taken to slide the items the item being dragged passes
+     * into their new cells. The items are moved with a
+     * {@link TranslateAnimation} before API level 12 and by animating their
+     * translation after
+     * 
+     * @param duration
+     *            the time in milliseconds, 0 for the items to jump
+     */
+    public void setSwapAnimationDuration(long duration) {
+	mSwapAnimationDuration = duration;
+    }
+
+    /**
+     * @see DraggableListView#setDrawOverlays(boolean)
+     * @param drawOverlays
+     */
+    public void setDrawOverlays(boolean drawOverlays) {
+	mDrawOverlays = drawOverlays;
+	if (mAdapter != null) {
+	    mAdapter.setDrawOverlays(drawOverlays);
+	    refreshOverlays();
+	}
+    }
+
+    /**
+     * @see DraggableListView#setDisplaceRows(boolean)
+     * @param displaceRows
+     */
+    public void setDisplaceRows(boolean displaceRows) {
+	mDisplaceRows = displaceRows;
+    }
+
+    /**
+     * @see DraggableListView#setDisplaceAnimationDuration(long)
+     * @param duration
+     */
+    public void setDisplaceAnimationDuration(long duration) {
+	mDisplaceAnimationDuration = duration;
+    }
+
+    /**
+     * @see DraggableListView#setDragStatus(boolean)
+     * @param status
+     */
+    public void setDragStatus(boolean status) {
+	mIsDragging = status;
+	mAdapter.setDragStatus(status);
+    }
+
+    /**
+     * @see DraggableListView#getDragStatus()
+     * @return the drag status
+     */
+    public boolean getDragStatus() {
+	return mIsDragging;
+    }
+
+    /**
+     * Overridden to allow auto scrolling for a list that scrolls
+     * horizontally. The default returns false as an {@link AbsListView} only
+     * scrolls vertically
+     * 
+     * @param right
+     *            true to check scrolling right, false to check scrolling left
+     * @return true if the list can be scrolled that way
+     */
+    protected boolean canScrollHorizontally(boolean right) {
+	return false;
+    }
+
+    /**
+     * Overridden to scroll a list that scrolls horizontally, see
+     * {@link #canScrollHorizontally(boolean)}
+     * 
+     * @param dx
+     *            the distance to scroll, negative to scroll left
+     */
+    protected void scrollHorizontallyBy(int dx) {
+    }
+
+    /**
+     * Should be called by the view's onTouchEvent, the view should return
+     * true without calling its super class if this does
+     * 
+     * @param ev
+     * @return true if the event was used by a drag
+     */
+    public boolean onTouchEvent(MotionEvent ev) {
+
+	if (!mIsDragging)
+	    return false;
+
+	int y = (int) ev.getY();
+	int x = (int) ev.getX();
+
+	switch (ev.getAction()) {
+	case MotionEvent.ACTION_DOWN:
+
+	    int startPosition = mHitTester.positionAt(x, y);
+
+	    if (startPosition != INVALID_POSITION && isOverDragIcon(startPosition, x)
+		    && mAdapter.isDraggable(startPosition)) {
+
+		mDragStarted = true;
+		mTouchX = x;
+		mTouchY = y;
+		mTouchTime = ev.getEventTime();
+		mTouchVelocityY = 0;
+		mSwapFrom = INVALID_POSITION;
+		boolean batch = mAdapter.isSelected(startPosition) && mAdapter.getSelectedCount() > 1;
+		updateDragShadow(startPosition);
+		mAdapter.setMoveStart(startPosition);
+		if (mDisplaceRows && !batch && mView instanceof ListView && ViewAnimations.isSupported()) {
+		    startDisplacing(startPosition);
+		}
+		return true;
+	    }
+
+	    // a tap away from the drag button toggles the selection of a row
+	    mTapPosition = startPosition;
+	    mTapX = x;
+	    mTapY = y;
+	    break;
+	case MotionEvent.ACTION_MOVE:
+	    if (mDragStarted) {
+		// only the latest position is used, the drag is updated once
+		// per frame however many move events arrive
+		addTouchSamples(ev);
+		mTouchX = x;
+		mTouchY = y;
+		mDragFrameScheduler.schedule();
+		return true;
+	    }
+	    if (mTapPosition != INVALID_POSITION
+		    && (Math.abs(y - mTapY) > mTouchSlop || Math.abs(x - mTapX) > mTouchSlop)) {
+		mTapPosition = INVALID_POSITION;
+	    }
+	    break;
+	case MotionEvent.ACTION_UP:
+	    if (mDragStarted) {
+		// drag has come to an end, apply the last position first
+		addTouchSamples(ev);
+		mTouchX = x;
+		mTouchY = y;
+		mDragFrameScheduler.cancel();
+		updateDrag();
+		if (mDisplacing) {
+		    // the only change to the adapter, the rows are rebound with
+		    // the new order as the displacements are removed
+		    int hover = mDisplaceHover;
+		    stopDisplacing();
+		    mAdapter.move(hover);
+		}
+		mAdapter.setMoveEnd();
+		stopDragging();
+		mDragStarted = false;
+		mAutoScroller.stop();
+		return true;
+	    }
+	    if (mTapPosition != INVALID_POSITION && mHitTester.positionAt(x, y) == mTapPosition) {
+		mAdapter.setSelected(mTapPosition, !mAdapter.isSelected(mTapPosition));
+	    }
+	    mTapPosition = INVALID_POSITION;
+	    break;
+	case MotionEvent.ACTION_CANCEL:
+	    mTapPosition = INVALID_POSITION;
+	    if (mDragStarted) {
+		// drag has been cancelled, a deferred move is discarded
+		mDragFrameScheduler.cancel();
+		stopDisplacing();
+		mAdapter.cancelMove();
+		stopDragging();
+		mDragStarted = false;
+		mAutoScroller.stop();
+		return true;
+	    }
+	    break;
+	default:
+	    break;
+	}
+	return false;
+    }
+
+    /**
+     * 
+     * @param position
+     * @param x
+     * @return true if the point is over the drag button of the item, which is
+     *         drawn on the right of the item
+     */
+    private boolean isOverDragIcon(int position, int x) {
+	View view = getViewAtPosition(position);
+	return view != null && x > view.getRight() - mAdapter.getDragIconWidth();
+    }
+
+    /**
+     * Adds the samples in a move event, including the historical ones batched
+     * into it, to the drag velocity
+     * 
+     * @param ev
+     */
+    private void addTouchSamples(MotionEvent ev) {
+	int historySize = ev.getHistorySize();
+	for (int i = 0; i < historySize; i++) {
+	    addTouchSample(ev.getHistoricalY(i), ev.getHistoricalEventTime(i));
+	}
+	addTouchSample(ev.getY(), ev.getEventTime());
+    }
+
+    private void addTouchSample(float y, long time) {
+	long dt = time - mTouchTime;
+	if (dt > 0) {
+	    float velocity = (y - mTouchY) * 1000f / dt;
+	    mTouchVelocityY = 0.6f * velocity + 0.4f * mTouchVelocityY;
+	    mTouchY = (int) y;
+	    mTouchTime = time;
+	}
+    }
+
+    /**
+     * 
+     * @return the smoothed speed of the drag in pixels per second, negative
+     *         when dragging up
+     */
+    float getDragVelocity() {
+	return mTouchVelocityY;
+    }
+
+    /**
+     * Moves the floating view to the latest drag position, moves the item
+     * being dragged to the item under it and starts or stops auto scrolling.
+     * Run once per frame while dragging
+     */
+    private void updateDrag() {
+	if (!mDragStarted)
+	    return;
+
+	updateDragShadow(INVALID_POSITION);
+
+	updateHover();
+
+	// if near the edges of list scroll
+	mAutoScroller.update(mTouchX, mTouchY);
+    }
+
+    /**
+     * Moves the item being dragged to the item under the drag
+     */
+    private void updateHover() {
+	if (mDisplacing) {
+	    displaceTo(findDisplacedTarget());
+	} else {
+	    moveHover(mHitTester.targetAt(mTouchX, mTouchY, mAdapter.getHoverPosition()));
+	}
+    }
+
+    /**
+     * Moves the item being dragged, remembering where it was shown so the
+     * items it passes can be animated when the list is next laid out
+     * 
+     * @param position
+     */
+    private void moveHover(int position) {
+	int hoverPosition = mAdapter.getHoverPosition();
+	mAdapter.move(position);
+	if (mSwapFrom == INVALID_POSITION) {
+	    mSwapFrom = hoverPosition;
+	}
+	mSwapTo = mAdapter.getHoverPosition();
+    }
+
+    /**
+     * @see DraggableListView#getViewAtPosition(int)
+     * @param position
+     *            the position in the underlying data set
+     * @return the {@link View} or null if it is not visible
+     */
+    public View getViewAtPosition(int position) {
+	return mView.getChildAt(position + getHeaderCount() - mView.getFirstVisiblePosition());
+    }
+
+    /**
+     * 
+     * @return the number of header rows before the adapter's rows
+     */
+    private int getHeaderCount() {
+	return mView instanceof ListView ? ((ListView) mView).getHeaderViewsCount() : 0;
+    }
+
+    /**
+     * Rebinds the visible rows between two positions in the underlying data
+     * set when the list is next laid out, so only the rows that have changed
+     * are bound again. Rows waiting to be rebound are combined until then
+     * 
+     * @param from
+     *            the first position to rebind
+     * @param to
+     *            the last position to rebind
+     */
+    void rebindRows(int from, int to) {
+	if (from < 0)
+	    from = 0;
+	if (to < from)
+	    return;
+	if (mRebindFrom == INVALID_POSITION) {
+	    mRebindFrom = from;
+	    mRebindTo = to;
+	} else {
+	    mRebindFrom = Math.min(mRebindFrom, from);
+	    mRebindTo = Math.max(mRebindTo, to);
+	}
+	mView.requestLayout();
+	if (mDrawOverlays) {
+	    // the placeholder may have moved
+	    mView.invalidate();
+	}
+    }
+
+    /**
+     * Updates the drag overlays of the visible rows when the list is next laid
+     * out without rebinding their data
+     */
+    void refreshOverlays() {
+	mRefreshOverlays = true;
+	mView.requestLayout();
+	if (mDrawOverlays) {
+	    mView.invalidate();
+	}
+    }
+
+    /**
+     * Should be called by the view's layoutChildren before calling its super
+     * class. Rebinds the rows that have changed
+     */
+    public void beginLayout() {
+	if (mMetricsListener != null) {
+	    mLayoutStart = System.nanoTime();
+	}
+	refreshVisibleRows();
+    }
+
+    /**
+     * Should be called by the view's layoutChildren after calling its super
+     * class. Starts the animations of the items the item being dragged has
+     * passed
+     */
+    public void endLayout() {
+	mHitTester.invalidate();
+	animateSwaps();
+	if (mDisplacing) {
+	    updateDisplacedStart();
+	}
+	if (mMetricsListener != null) {
+	    mMetricsListener.onLayout(System.nanoTime() - mLayoutStart);
+	}
+    }
+
+    /**
+     * Rebinds the visible rows waiting to be rebound and updates the overlays
+     * of the other visible rows if needed
+     */
+    private void refreshVisibleRows() {
+
+	if (mAdapter == null || (mRebindFrom == INVALID_POSITION && !mRefreshOverlays))
+	    return;
+
+	int first = mView.getFirstVisiblePosition() - getHeaderCount();
+	int count = mAdapter.getCount();
+
+	for (int i = 0; i < mView.getChildCount(); i++) {
+	    int position = first + i;
+	    if (position < 0 || position >= count)
+		continue;
+
+	    View child = mView.getChildAt(i);
+	    if (position >= mRebindFrom && position <= mRebindTo) {
+		if (!mAdapter.canRebind(child, position)) {
+		    // a row of another view type has moved here, the list has to
+		    // lay out its rows again with views of the right type. The
+		    // content has not changed so the other rows are not rebound
+		    mAdapter.relayoutRows();
+		    break;
+		}
+		mAdapter.getView(position, child, mView);
+	    } else if (mRefreshOverlays) {
+		mAdapter.modifyView(position, child, true);
+	    }
+	}
+
+	mRebindFrom = INVALID_POSITION;
+	mRebindTo = INVALID_POSITION;
+	mRefreshOverlays = false;
+    }
+
+    /**
+     * Slides each item the item being dragged has passed since the last
+     * layout from the cell it was shown in to the one it is shown in now. The
+     * views stay in their cells and are rebound, so each starts offset by the
+     * distance between the two cells
+     */
+    private void animateSwaps() {
+	int from = mSwapFrom;
+	int to = mSwapTo;
+	mSwapFrom = INVALID_POSITION;
+	if (mSwapAnimationDuration <= 0 || from == INVALID_POSITION || to == INVALID_POSITION || from == to)
+	    return;
+
+	// the passed items have each moved one cell towards where the item
+	// being dragged was
+	int step = to > from ? 1 : -1;
+	int first = mView.getFirstVisiblePosition() - getHeaderCount();
+	int childCount = mView.getChildCount();
+	for (int position = Math.min(from, to); position <= Math.max(from, to); position++) {
+	    if (position == to)
+		continue;
+	    int index = position - first;
+	    int oldIndex = index + step;
+	    if (index < 0 || index >= childCount || oldIndex < 0 || oldIndex >= childCount)
+		continue;
+
+	    View child = mView.getChildAt(index);
+	    View oldCell = mView.getChildAt(oldIndex);
+	    float dx = oldCell.getLeft() - child.getLeft();
+	    float dy = oldCell.getTop() - child.getTop();
+	    if (ViewAnimations.isSupported()) {
+		ViewAnimations.slide(child, dx, dy, mSwapAnimationDuration);
+	    } else {
+		TranslateAnimation animation = new TranslateAnimation(dx, 0, dy, 0);
+		animation.setDuration(mSwapAnimationDuration);
+		child.startAnimation(animation);
+	    }
+	}
+    }
+
+    /**
+     * Starts displacing the rows for a drag instead of moving the item in the
+     * adapter
+     * 
+     * @param position
+     *            the position the drag started at
+     */
+    private void startDisplacing(int position) {
+	View view = getViewAtPosition(position);
+	if (view == null)
+	    return;
+	mDisplacing = true;
+	mDisplaceStart = position;
+	mDisplaceHover = position;
+	mDisplaceHeight = view.getHeight() + ((ListView) mView).getDividerHeight();
+    }
+
+    /**
+     * Puts the rows back where they are laid out
+     */
+    private void stopDisplacing() {
+	if (!mDisplacing)
+	    return;
+	mDisplacing = false;
+	for (int i = 0; i < mView.getChildCount(); i++) {
+	    View child = mView.getChildAt(i);
+	    Object tag = child.getTag();
+	    if (tag instanceof DraggableGenericAdapter.DraggableViewHolder) {
+		DraggableGenericAdapter.DraggableViewHolder holder = (DraggableGenericAdapter.DraggableViewHolder) tag;
+		if (holder.mDisplacedPosition != -1) {
+		    ViewAnimations.reset(child);
+		    holder.mDisplacedPosition = -1;
+		}
+	    }
+	}
+    }
+
+    /**
+     * Follows the item being dragged if the data has changed and the adapter
+     * has found it at another position, or stops displacing if it has gone
+     */
+    private void updateDisplacedStart() {
+	int position = mAdapter.getHoverPosition();
+	if (position == INVALID_POSITION) {
+	    stopDisplacing();
+	    return;
+	}
+	mDisplaceStart = position;
+	mDisplaceHover = Math.min(mDisplaceHover, mAdapter.getCount() - 1);
+	applyDisplacements();
+    }
+
+    /**
+     * Finds where the item being dragged is shown while displacing. It moves
+     * past the row next to the gap it leaves once the drag crosses the middle
+     * of where that row is drawn
+     * 
+     * @return the position
+     */
+    private int findDisplacedTarget() {
+	int hover = mDisplaceHover;
+	int count = mAdapter.getCount();
+	while (true) {
+	    // the row drawn below the gap
+	    int below = hover >= mDisplaceStart ? hover + 1 : hover;
+	    if (below < count && mTouchY > getDisplacedMiddle(below, Integer.MAX_VALUE)) {
+		hover++;
+		continue;
+	    }
+	    // the row drawn above the gap
+	    int above = hover > mDisplaceStart ? hover : hover - 1;
+	    if (above >= 0 && mTouchY < getDisplacedMiddle(above, Integer.MIN_VALUE)) {
+		hover--;
+		continue;
+	    }
+	    return hover;
+	}
+    }
+
+    /**
+     * 
+     * @param position
+     * @param notVisible
+     *            the value returned if the row is not visible
+     * @return the middle of where the row at the position is drawn while
+     *         displacing
+     */
+    private int getDisplacedMiddle(int position, int notVisible) {
+	View view = getViewAtPosition(position);
+	if (view == null)
+	    return notVisible;
+	return (view.getTop() + view.getBottom()) / 2 + (int) getDisplacement(position);
+    }
+
+    /**
+     * Moves the gap to a position, animating the rows between to their new
+     * places
+     * 
+     * @param position
+     */
+    private void displaceTo(int position) {
+	if (position == mDisplaceHover)
+	    return;
+	mDisplaceHover = position;
+	applyDisplacements();
+    }
+
+    /**
+     * Sets the displacement of each visible row. Rows that were displaced for
+     * the same position are animated to their new displacement, rows that
+     * have just been bound are moved straight there
+     */
+    private void applyDisplacements() {
+	int first = mView.getFirstVisiblePosition() - getHeaderCount();
+	for (int i = 0; i < mView.getChildCount(); i++) {
+	    View child = mView.getChildAt(i);
+	    Object tag = child.getTag();
+	    if (!(tag instanceof DraggableGenericAdapter.DraggableViewHolder))
+		continue;
+
+	    DraggableGenericAdapter.DraggableViewHolder holder = (DraggableGenericAdapter.DraggableViewHolder) tag;
+	    int position = first + i;
+	    float displacement = getDisplacement(position);
+	    if (holder.mDisplacedPosition != position) {
+		ViewAnimations.translateY(child, displacement, 0);
+	    } else if (holder.mDisplacement != displacement) {
+		ViewAnimations.translateY(child, displacement, mDisplaceAnimationDuration);
+	    }
+	    holder.mDisplacedPosition = position;
+	    holder.mDisplacement = displacement;
+	}
+    }
+
+    /**
+     * 
+     * @param position
+     * @return how far the row at the position is moved from where it is laid
+     *         out while displacing
+     */
+    private float getDisplacement(int position) {
+	int start = mDisplaceStart;
+	int hover = mDisplaceHover;
+	if (position == start) {
+	    // the row being dragged, shown as the placeholder, fills the gap
+	    int from = hover > start ? start + 1 : hover;
+	    int to = hover > start ? hover : start - 1;
+	    int distance = 0;
+	    for (int p = from; p <= to; p++) {
+		View view = getViewAtPosition(p);
+		distance += view == null ? mDisplaceHeight : view.getHeight()
+			+ ((ListView) mView).getDividerHeight();
+	    }
+	    return hover > start ? distance : -distance;
+	}
+	if (position > start && position <= hover)
+	    return -mDisplaceHeight;
+	if (position >= hover && position < start)
+	    return mDisplaceHeight;
+	return 0;
+    }
+
+    /**
+     * Calls {@link #performDrag(int)}, measuring it if there is a metrics
+     * listener
+     */
+    private void updateDragShadow(int position) {
+	if (mMetricsListener != null) {
+	    long start = System.nanoTime();
+	    performDrag(position);
+	    mMetricsListener.onDragShadowUpdated(System.nanoTime() - start);
+	} else {
+	    performDrag(position);
+	}
+    }
+
+    /**
+     * Moves the View that floats above the list when the user drags an item
+     * to the latest drag position. If the view does not yet exist create the
+     * view. The view is drawn by the list in {@link #draw(Canvas)} so moving
+     * it only needs the list to be redrawn
+     * 
+     * @param position
+     *            the position of the item being dragged, used to create the
+     *            view
+     */
+    private void performDrag(int position) {
+
+	if (!mDragViewShown) {
+
+	    // create the drag view
+
+	    if (position == INVALID_POSITION)
+		return;
+
+	    View dragStartView = getViewAtPosition(position);
+
+	    int rowWidth = dragStartView.getWidth();
+	    int rowHeight = dragStartView.getHeight();
+
+	    // a selection is drawn as a stack of rows with the one being
+	    // dragged on top, the rows behind are only outlines of it
+	    int selected = mAdapter.isSelected(position) ? mAdapter.getSelectedCount() : 1;
+	    int stackRows = Math.min(selected, MAX_STACK_ROWS);
+	    int stackSize = (stackRows - 1) * mStackOffset;
+	    mDragViewWidth = rowWidth + stackSize;
+	    mDragViewHeight = rowHeight + stackSize;
+
+	    mDragBitmap = mBitmapPool.acquire(mDragViewWidth, mDragViewHeight);
+	    mDragCanvas.setBitmap(mDragBitmap);
+
+	    mStackPaint.setColor(mHoverColor);
+	    for (int i = stackRows - 1; i > 0; i--) {
+		int offset = i * mStackOffset;
+		mDragCanvas.drawRect(offset, offset, offset + rowWidth, offset + rowHeight, mStackPaint);
+	    }
+
+	    Drawable bg = dragStartView.getBackground();
+
+	    dragStartView.setBackgroundColor(mHoverColor);
+	    dragStartView.draw(mDragCanvas);
+	    dragStartView.setBackgroundDrawable(bg);
+
+	    if (selected > 1) {
+		mDragCanvas.drawText(String.valueOf(selected), mStackOffset,
+			mStackOffset - mStackCountPaint.ascent(), mStackCountPaint);
+	    }
+
+	    mDragSrcRect.set(0, 0, mDragViewWidth, mDragViewHeight);
+	    mDragDstRect.set(dragStartView.getLeft(), 0, dragStartView.getLeft() + mDragViewWidth, mDragViewHeight);
+	    mDragPaint.setAlpha((int) (mHoverAlpha * 255));
+	    mDragViewShown = true;
+	} else {
+	    // redraw where the view was
+	    mView.invalidate(mDragDstRect.left, mDragDstRect.top, mDragDstRect.right, mDragDstRect.bottom);
+	}
+
+	int dx = mFollowX ? mTouchX - mDragViewWidth / 2 - mDragDstRect.left : 0;
+	mDragDstRect.offset(dx, mTouchY - mDragViewHeight / 2 - mDragDstRect.top);
+	mView.invalidate(mDragDstRect.left, mDragDstRect.top, mDragDstRect.right, mDragDstRect.bottom);
+
+    }
+
+    /**
+     * Removes the View that floats above the list when the user drags an
+     * item. The bitmap is returned to the pool to be reused by the next drag
+     */
+    private void stopDragging() {
+
+	if (mDragViewShown) {
+	    mDragViewShown = false;
+	    mView.invalidate(mDragDstRect.left, mDragDstRect.top, mDragDstRect.right, mDragDstRect.bottom);
+	}
+	if (mDragBitmap != null) {
+	    mBitmapPool.release(mDragBitmap);
+	    mDragBitmap = null;
+	}
+    }
+
+    /**
+     * Should be called by the view's dispatchDraw after calling its super
+     * class. Draws the View that floats above the list when the user drags an
+     * item on top of the items
+     * 
+     * @param canvas
+     */
+    public void draw(Canvas canvas) {
+	if (mDrawOverlays && mAdapter != null) {
+	    drawOverlays(canvas);
+	}
+	if (mDragViewShown) {
+	    canvas.drawBitmap(mDragBitmap, mDragSrcRect, mDragDstRect, mDragPaint);
+	}
+    }
+
+    /**
+     * Draws the drag button on the right of each row that can be dragged,
+     * and the placeholder over the row the item being dragged is over, in
+     * the same places the overlay views would be
+     * 
+     * @param canvas
+     */
+    private void drawOverlays(Canvas canvas) {
+	Drawable button = mAdapter.getDragButtonDrawable();
+	Drawable placeholder = mAdapter.getPlaceholderDrawable();
+	int buttonWidth = button.getIntrinsicWidth();
+	int buttonHeight = button.getIntrinsicHeight();
+	int hoverPosition = mAdapter.getHoverPosition();
+	boolean translated = ViewAnimations.isSupported();
+
+	int first = mView.getFirstVisiblePosition() - getHeaderCount();
+	int count = mAdapter.getCount();
+	for (int i = 0; i < mView.getChildCount(); i++) {
+	    int position = first + i;
+	    if (position < 0 || position >= count)
+		continue;
+
+	    View child = mView.getChildAt(i);
+	    // follow the cell while it is displaced or slides into place
+	    int left = child.getLeft() + (translated ? (int) ViewAnimations.getTranslationX(child) : 0);
+	    int top = child.getTop() + (translated ? (int) ViewAnimations.getTranslationY(child) : 0);
+	    int right = left + child.getWidth();
+	    if (mAdapter.isDragButtonShown(position)) {
+		mOverlayRect.set(right - buttonWidth, top, right, top + buttonHeight);
+		button.setBounds(mOverlayRect);
+		button.draw(canvas);
+	    }
+	    if (position == hoverPosition) {
+		mOverlayRect.set(left, top, right, top + child.getHeight());
+		placeholder.setBounds(mOverlayRect);
+		placeholder.draw(canvas);
+	    }
+	}
+    }
+
+    /**
+     * Should be called by the view's onDetachedFromWindow. Stops the drag and
+     * returns the bitmap used to draw the view being dragged to the pool
+     */
+    public void onDetachedFromWindow() {
+	mDragFrameScheduler.cancel();
+	stopDisplacing();
+	mAutoScroller.stop();
+	if (mDragStarted) {
+	    // as if the drag was cancelled, a deferred move is discarded
+	    mAdapter.cancelMove();
+	    mDragStarted = false;
+	}
+	mTapPosition = INVALID_POSITION;
+	stopDragging();
+    }
+
+}
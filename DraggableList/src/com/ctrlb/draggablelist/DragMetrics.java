@@ -0,0 +1,153 @@
+package com.ctrlb.draggablelist;
+
+/**
+ * A {@link DragMetricsListener} that counts the events and keeps histograms
+ * of their timings. Times are in nanoseconds.
+ * 
+ * @author philip brown
+ * 
+ */
+public class DragMetrics implements DragMetricsListener {
+
+    private long mViewsInflated;
+    private long mViewsRecycled;
+    private long mBindsSinceLayout;
+    private long mAutoScrollTicks;
+    private final Histogram mBindTime = new Histogram();
+    private final Histogram mBindsPerLayout = new Histogram();
+    private final Histogram mLayoutTime = new Histogram();
+    private final Histogram mProviderMoveCalls = new Histogram();
+    private final Histogram mProviderMoveTime = new Histogram();
+    private final Histogram mDragShadowTime = new Histogram();
+
+    @Override
+    public void onRowBound(int position, boolean inflated, long nanos) {
+	if (inflated) {
+	    mViewsInflated++;
+	} else {
+	    mViewsRecycled++;
+	}
+	mBindsSinceLayout++;
+	mBindTime.record(nanos);
+    }
+
+    @Override
+    public void onLayout(long nanos) {
+	mBindsPerLayout.record(mBindsSinceLayout);
+	mBindsSinceLayout = 0;
+	mLayoutTime.record(nanos);
+    }
+
+    @Override
+    public void onProviderMove(int calls, long nanos) {
+	mProviderMoveCalls.record(calls);
+	mProviderMoveTime.record(nanos);
+    }
+
+    @Override
+    public void onDragShadowUpdated(long nanos) {
+	mDragShadowTime.record(nanos);
+    }
+
+    @Override
+    public void onAutoScroll(int dy) {
+	mAutoScrollTicks++;
+    }
+
+    /**
+     * 
+     * @return the number of row views inflated
+     */
+    public long getViewsInflated() {
+	return mViewsInflated;
+    }
+
+    /**
+     * 
+     * @return the number of row views recycled
+     */
+    public long getViewsRecycled() {
+	return mViewsRecycled;
+    }
+
+    /**
+     * 
+     * @return the number of frames the list was auto scrolled in
+     */
+    public long getAutoScrollTicks() {
+	return mAutoScrollTicks;
+    }
+
+    /**
+     * 
+     * @return the time taken to bind each row
+     */
+    public Histogram getBindTime() {
+	return mBindTime;
+    }
+
+    /**
+     * 
+     * @return the number of rows bound for each layout of the list
+     */
+    public Histogram getBindsPerLayout() {
+	return mBindsPerLayout;
+    }
+
+    /**
+     * 
+     * @return the time taken by each layout of the list
+     */
+    public Histogram getLayoutTime() {
+	return mLayoutTime;
+    }
+
+    /**
+     * 
+     * @return the number of calls made to the data provider for each move
+     */
+    public Histogram getProviderMoveCalls() {
+	return mProviderMoveCalls;
+    }
+
+    /**
+     * 
+     * @return the time taken by the data provider for each move
+     */
+    public Histogram getProviderMoveTime() {
+	return mProviderMoveTime;
+    }
+
+    /**
+     * 
+     * @return the time taken to draw or move the view floating above the list
+     */
+    public Histogram getDragShadowTime() {
+	return mDragShadowTime;
+    }
+
+    /**
+     * Sets all the counters and histograms back to zero
+     */
+    public void reset() {
+	mViewsInflated = 0;
+	mViewsRecycled = 0;
+	mBindsSinceLayout = 0;
+	mAutoScrollTicks = 0;
+	mBindTime.reset();
+	mBindsPerLayout.reset();
+	mLayoutTime.reset();
+	mProviderMoveCalls.reset();
+	mProviderMoveTime.reset();
+	mDragShadowTime.reset();
+    }
+
+    @Override
+    public String toString() {
+	return "inflated=" + mViewsInflated + " recycled=" + mViewsRecycled + " autoScrollTicks="
+		+ mAutoScrollTicks + "\nbind " + mBindTime + "\nbindsPerLayout " + mBindsPerLayout + "\nlayout "
+		+ mLayoutTime + "\nproviderMoveCalls " + mProviderMoveCalls + "\nproviderMove "
+		+ mProviderMoveTime + "\ndragShadow " + mDragShadowTime;
+    }
+
+}
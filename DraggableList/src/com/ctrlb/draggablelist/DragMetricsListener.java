@@ -0,0 +1,63 @@
+package com.ctrlb.draggablelist;
+
+/**
+ * Interface used to measure where the time goes while the list is bound and
+ * dragged. Set on a {@link DraggableListView} or {@link GenericAdapter}. When
+ * no listener is set nothing is measured. All the methods are called on the
+ * main thread. {@link DragMetrics} is an implementation that keeps counters
+ * and histograms.
+ * 
+ * @author philip brown
+ * 
+ */
+
+public interface DragMetricsListener {
+
+    /**
+     * called after a row has been bound by the adapter
+     * 
+     * @param position
+     *            the position of the row
+     * @param inflated
+     *            true if the view was inflated, false if it was recycled
+     * @param nanos
+     *            the time taken to bind the row
+     */
+    public void onRowBound(int position, boolean inflated, long nanos);
+
+    /**
+     * called after the list has laid out its rows, once for each frame the
+     * rows change in
+     * 
+     * @param nanos
+     *            the time taken to lay out the rows, including binding them
+     */
+    public void onLayout(long nanos);
+
+    /**
+     * called after the data provider has been moved
+     * 
+     * @param calls
+     *            the number of calls made to the data provider
+     * @param nanos
+     *            the time taken by the calls
+     */
+    public void onProviderMove(int calls, long nanos);
+
+    /**
+     * called after the view floating above the list has been drawn or moved
+     * 
+     * @param nanos
+     *            the time taken
+     */
+    public void onDragShadowUpdated(long nanos);
+
+    /**
+     * called for each frame the list is auto scrolled while dragging
+     * 
+     * @param dy
+     *            the distance scrolled in pixels
+     */
+    public void onAutoScroll(int dy);
+
+}
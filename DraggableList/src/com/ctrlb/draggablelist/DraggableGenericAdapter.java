@@ -1,9 +1,13 @@
 package com.ctrlb.draggablelist;
 
 import com.ctrlb.draggablelist.R;
+import java.util.Arrays;
+
 import android.content.Context;
 import android.graphics.Shader.TileMode;
 import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
+import android.util.SparseBooleanArray;
 import android.view.View;
 import android.view.ViewGroup;
 import android.view.ViewGroup.LayoutParams;
@@ -18,8 +22,59 @@ import android.widget.RelativeLayout;
  */
 public class DraggableGenericAdapter extends GenericAdapter {
 
+    /** the position the item being dragged is shown at */
     private int mHoverPosition = -1;
+    /**
+     * the position the item being dragged is at in the data provider. This
+     * lags mHoverPosition until the pending move is committed
+     */
+    private int mDataPosition = -1;
+    /** the position the item being dragged was at when the drag started */
+    private int mStartPosition = -1;
+    /** the drags that can be undone and redone */
+    private final MoveHistory mHistory = new MoveHistory(MoveHistory.DEFAULT_LIMIT);
+    /**
+     * true while the list is told the rows have changed because of a drag or
+     * the selection, rather than because the data changed
+     */
+    private boolean mRowsChanging;
+    /**
+     * the id of the item being dragged, used to find it again if the data
+     * changes during the drag. Only set if the ids are stable
+     */
+    private long mDragId;
+    /**
+     * if true the data provider is only changed when the drag ends, until
+     * then the order is kept in mPermutation
+     */
+    private boolean mDeferCommit = false;
+    /** the order the items are shown in while a deferred drag is in progress */
+    private final PositionPermutation mPermutation = new PositionPermutation();
+    /** the positions of the selected items */
+    private final SparseBooleanArray mSelection = new SparseBooleanArray();
+    /**
+     * the positions of the selected items in the data provider while they are
+     * dragged together, null if a single item is being dragged
+     */
+    private int[] mBatchPositions;
+    /**
+     * the positions of the items not selected while a selection is dragged,
+     * the selection is shown as one row at mHoverPosition between them
+     */
+    private int[] mBatchOthers;
+    /**
+     * the controller of the list showing this adapter, used to rebind only the
+     * rows that have changed. If null the whole list is redrawn
+     */
+    private DragController mDragController;
     private boolean mIsDragable = false;
+    /**
+     * true if the drag button and placeholder are drawn by the
+     * {@link DragController} instead of added to each row as views
+     */
+    private boolean mDrawOverlays = false;
+    /** the view types whose rows can not be dragged, such as headers */
+    private final SparseBooleanArray mFixedViewTypes = new SparseBooleanArray();
     private BitmapDrawable mPlaceHolderBitmap;
     private BitmapDrawable mDragButtonBitmap;
 
@@ -59,8 +114,22 @@ public class DraggableGenericAdapter extends GenericAdapter {
      */
 
     public void setMoveStart(int position) {
+	if (isSelected(position) && getSelectedCount() > 1) {
+	    startBatchMove(position);
+	    return;
+	}
+	clearSelection();
+
+	if (mDeferCommit) {
+	    mPermutation.reset(getCount());
+	}
 	mHoverPosition = position;
-	notifyDataSetChanged();
+	mDataPosition = position;
+	mStartPosition = position;
+	if (hasStableIds()) {
+	    mDragId = mDataProvider.getItemId(position);
+	}
+	refreshRows(position, position);
     }
 
     /**
@@ -68,8 +137,326 @@ public class DraggableGenericAdapter extends GenericAdapter {
      * dragging a list item
      */
     public void setMoveEnd() {
+	if (mBatchPositions != null) {
+	    endBatchMove(true);
+	    return;
+	}
+	int hoverPosition = mHoverPosition;
+	commitPendingMove();
+	if (hoverPosition != -1 && hoverPosition != mStartPosition) {
+	    mHistory.record(mDataProvider.getItemId(hoverPosition), mStartPosition, hoverPosition);
+	}
 	mHoverPosition = -1;
-	notifyDataSetChanged();
+	mDataPosition = -1;
+	// the rows already show the new order so only the placeholder changes
+	refreshRows(hoverPosition, hoverPosition);
+    }
+
+    /**
+     * should be called by the {@link DraggableListView} NOT the user when a
+     * drag is cancelled. If the commit is deferred the item is returned to
+     * where it started without the data provider being changed, otherwise this
+     * is the same as {@link #setMoveEnd()}
+     */
+    public void cancelMove() {
+	if (mBatchPositions != null) {
+	    endBatchMove(false);
+	    return;
+	}
+	if (!mDeferCommit) {
+	    setMoveEnd();
+	    return;
+	}
+	int hoverPosition = mHoverPosition;
+	int startPosition = mDataPosition;
+	mHoverPosition = -1;
+	mDataPosition = -1;
+	// the rows between return to their original order
+	refreshRows(startPosition, hoverPosition);
+    }
+
+    /**
+     * Starts dragging the selected items together. They are shown as a single
+     * row, in place of the item the drag started on, until they are dropped
+     * 
+     * @param position
+     *            the position of the item the drag started on
+     */
+    private void startBatchMove(int position) {
+	int count = getCount();
+	int selected = getSelectedCount();
+	mBatchPositions = new int[selected];
+	mBatchOthers = new int[count - selected];
+
+	int hover = -1;
+	for (int i = 0, b = 0, o = 0; i < count; i++) {
+	    if (i == position) {
+		hover = o;
+	    }
+	    if (mSelection.get(i)) {
+		mBatchPositions[b++] = i;
+	    } else {
+		mBatchOthers[o++] = i;
+	    }
+	}
+
+	mHoverPosition = hover;
+	mDataPosition = position;
+	// the number of rows has changed
+	notifyRowsChanged();
+    }
+
+    /**
+     * Stops dragging the selected items and moves them in the data provider
+     * to where they were dropped. They stay selected. The moves are kept in
+     * the undo history as one drag
+     * 
+     * @param commit
+     *            false if the drag was cancelled and nothing is moved
+     */
+    private void endBatchMove(boolean commit) {
+	int[] positions = mBatchPositions;
+	int target = mHoverPosition;
+	mBatchPositions = null;
+	mBatchOthers = null;
+	mHoverPosition = -1;
+	mDataPosition = -1;
+
+	if (commit && target != -1) {
+	    recordBatch(positions, target);
+	    moveBatch(positions, target);
+	    mSelection.clear();
+	    for (int i = 0; i < positions.length; i++) {
+		mSelection.put(target + i, true);
+	    }
+	}
+	notifyRowsChanged();
+    }
+
+    /**
+     * Records the moves of a batch in the undo history as a run that is
+     * undone and redone together. Must be called before the items are moved
+     * 
+     * @param positions
+     *            the positions in the data provider in ascending order
+     * @param target
+     *            the position the first item ends up at
+     */
+    private void recordBatch(int[] positions, int target) {
+	int[] items = new int[positions.length];
+	int[] from = new int[positions.length];
+	int[] to = new int[positions.length];
+	int moves = ProviderMoves.splitBatch(positions, target, items, from, to);
+	for (int i = 0; i < moves; i++) {
+	    mHistory.record(mDataProvider.getItemId(positions[items[i]]), from[i], to[i], i > 0);
+	}
+    }
+
+    /**
+     * Moves the items at the given positions in the data provider so they are
+     * next to each other starting at the target
+     * 
+     * @param positions
+     *            the positions in the data provider in ascending order
+     * @param target
+     *            the position the first item ends up at
+     */
+    private void moveBatch(int[] positions, int target) {
+	invalidateIds();
+	long start = mMetricsListener != null ? System.nanoTime() : 0;
+	int calls = ProviderMoves.moveBatch((MoveableDataProvider) mDataProvider, positions, target);
+
+	if (mMetricsListener != null) {
+	    mMetricsListener.onProviderMove(calls, System.nanoTime() - start);
+	}
+    }
+
+    /**
+     * Selects or deselects the item at a position. When more than one item
+     * is selected dragging one of them drags them all together. The selected
+     * rows are set as selected so they can be styled with a state list
+     * drawable
+     * 
+     * @param position
+     * @param selected
+     */
+    public void setSelected(int position, boolean selected) {
+	if (mHoverPosition != -1)
+	    throw new IllegalStateException("Can not change the selection while an item is being dragged");
+	if (selected) {
+	    mSelection.put(position, true);
+	} else {
+	    mSelection.delete(position);
+	}
+	refreshRows(position, position);
+    }
+
+    /**
+     * 
+     * @param position
+     * @return true if the item at the position is selected
+     */
+    public boolean isSelected(int position) {
+	return mSelection.get(position);
+    }
+
+    /**
+     * 
+     * @return the number of selected items
+     */
+    public int getSelectedCount() {
+	return mSelection.size();
+    }
+
+    /**
+     * 
+     * @return the positions of the selected items in ascending order
+     */
+    public int[] getSelectedPositions() {
+	int[] positions = new int[mSelection.size()];
+	for (int i = 0; i < positions.length; i++) {
+	    positions[i] = mSelection.keyAt(i);
+	}
+	return positions;
+    }
+
+    /**
+     * Deselects all the items
+     */
+    public void clearSelection() {
+	if (mSelection.size() == 0)
+	    return;
+	mSelection.clear();
+	if (mDragController != null) {
+	    mDragController.refreshOverlays();
+	} else {
+	    notifyRowsChanged();
+	}
+    }
+
+    /**
+     * Undoes the last drag with a single move in the data provider, or a move
+     * for each item of a drag of several selected items. Only the rows
+     * between where the items were dragged from and to are rebound
+     * 
+     * @return false if there is nothing to undo or an item could not be
+     *         found, in which case the history is cleared
+     */
+    public boolean undo() {
+	if (mHoverPosition != -1)
+	    throw new IllegalStateException("Can not undo while an item is being dragged");
+	if (!mHistory.canUndo())
+	    return false;
+	do {
+	    int index = mHistory.undo();
+	    if (!replayMove(mHistory.getId(index), mHistory.getTo(index), mHistory.getFrom(index)))
+		return false;
+	} while (mHistory.isNextJoined());
+	return true;
+    }
+
+    /**
+     * Makes the last undone drag again
+     * 
+     * @return false if there is nothing to redo or the item could not be
+     *         found, in which case the history is cleared
+     */
+    public boolean redo() {
+	if (mHoverPosition != -1)
+	    throw new IllegalStateException("Can not redo while an item is being dragged");
+	if (!mHistory.canRedo())
+	    return false;
+	do {
+	    int index = mHistory.redo();
+	    if (!replayMove(mHistory.getId(index), mHistory.getFrom(index), mHistory.getTo(index)))
+		return false;
+	} while (mHistory.isNextJoined());
+	return true;
+    }
+
+    /**
+     * Moves an item from the history. If the ids are stable and the item is
+     * no longer where it is expected it is found by its id
+     * 
+     * @param id
+     * @param from
+     * @param to
+     * @return false if the item could not be found
+     */
+    private boolean replayMove(long id, int from, int to) {
+	int count = mDataProvider.getCount();
+	if (hasStableIds() && (from >= count || mDataProvider.getItemId(from) != id)) {
+	    from = getDataPositionForId(id);
+	}
+	if (from < 0 || from >= count) {
+	    mHistory.clear();
+	    return false;
+	}
+	to = Math.min(to, count - 1);
+
+	moveInProvider(from, to);
+	clearSelection();
+	refreshRows(from, to);
+	return true;
+    }
+
+    /**
+     * 
+     * @return true if there is a drag to undo
+     */
+    public boolean canUndo() {
+	return mHistory.canUndo();
+    }
+
+    /**
+     * 
+     * @return true if there is an undone drag to redo
+     */
+    public boolean canRedo() {
+	return mHistory.canRedo();
+    }
+
+    /**
+     * Set the number of drags that can be undone, the default is 100. The
+     * history is cleared
+     * 
+     * @param limit
+     */
+    public void setUndoLimit(int limit) {
+	mHistory.setLimit(limit);
+    }
+
+    /**
+     * Forgets the drags that can be undone and redone
+     */
+    public void clearUndoHistory() {
+	mHistory.clear();
+    }
+
+    /**
+     * Set whether the data provider is changed while an item is dragged or
+     * only once when it is dropped. When deferred the new order is kept in
+     * memory while dragging and a single move from where the item started to
+     * where it was dropped is made on the data provider. Should not be changed
+     * while an item is being dragged
+     * 
+     * @param deferCommit
+     *            true to only change the data provider when the item is
+     *            dropped
+     */
+    public void setDeferCommit(boolean deferCommit) {
+	if (mHoverPosition != -1)
+	    throw new IllegalStateException("Can not change the commit mode while an item is being dragged");
+	mDeferCommit = deferCommit;
+    }
+
+    /**
+     * 
+     * @return true if the data provider is only changed when the item is
+     *         dropped
+     */
+    public boolean isDeferCommit() {
+	return mDeferCommit;
     }
 
     /**
@@ -82,7 +469,93 @@ public class DraggableGenericAdapter extends GenericAdapter {
      */
     public void setDragStatus(boolean isDragable) {
 	mIsDragable = isDragable;
-	notifyDataSetChanged();
+	if (mDragController != null) {
+	    mDragController.refreshOverlays();
+	} else {
+	    notifyRowsChanged();
+	}
+    }
+
+    /**
+     * should be called by the {@link DragController} NOT the user to set
+     * whether it draws the drag button and placeholder over the rows. When it
+     * does the overlay views are not added to the rows, so the row layouts do
+     * not need to be a {@link ViewGroup}. Rows that already have the overlay
+     * views hide them
+     * 
+     * @param drawOverlays
+     *            true if the controller draws them
+     */
+    void setDrawOverlays(boolean drawOverlays) {
+	mDrawOverlays = drawOverlays;
+    }
+
+    /**
+     * 
+     * @param position
+     * @return true if the drag button should be shown on the row at the
+     *         position
+     */
+    boolean isDragButtonShown(int position) {
+	return mIsDragable && isDraggable(position);
+    }
+
+    /**
+     * 
+     * @return the image shown as the drag button
+     */
+    Drawable getDragButtonDrawable() {
+	return mDragButtonBitmap;
+    }
+
+    /**
+     * 
+     * @return the image tiled over the row the item being dragged is over
+     */
+    Drawable getPlaceholderDrawable() {
+	return mPlaceHolderBitmap;
+    }
+
+    /**
+     * Set whether the rows of a view type can be dragged. Rows that can not
+     * be dragged, such as section headers, do not show the drag button but
+     * other rows can still be dropped around them
+     * 
+     * @param viewType
+     *            the view type, see
+     *            {@link GenericAdapter#addViewType(int, String[], int[])}
+     * @param draggable
+     *            false to stop the rows of the view type being dragged
+     */
+    public void setViewTypeDraggable(int viewType, boolean draggable) {
+	if (draggable) {
+	    mFixedViewTypes.delete(viewType);
+	} else {
+	    mFixedViewTypes.put(viewType, true);
+	}
+	if (mDragController != null) {
+	    mDragController.refreshOverlays();
+	} else {
+	    notifyRowsChanged();
+	}
+    }
+
+    /**
+     * 
+     * @param position
+     * @return true if the row at the position can be dragged
+     */
+    boolean isDraggable(int position) {
+	return mFixedViewTypes.size() == 0 || !mFixedViewTypes.get(getItemViewType(position));
+    }
+
+    /**
+     * 
+     * @return the position the item being dragged is shown at or
+     *         {@link ListView#INVALID_POSITION} if no item is being dragged
+     */
+    public int getHoverPosition() {
+	return mHoverPosition;
     }
 
     /**
@@ -95,35 +568,240 @@ public class DraggableGenericAdapter extends GenericAdapter {
     }
 
     /**
-     * update where the item being dragged has moved to
+     * update where the item being dragged has moved to. The data set is not
+     * changed until the rows are next bound, so several moves made before the
+     * next frame is drawn are combined into one
      * 
      * @param position
      */
     public void move(int position) {
 
-	if (position == ListView.INVALID_POSITION)
+	if (position == ListView.INVALID_POSITION || mHoverPosition == ListView.INVALID_POSITION)
 	    return;
 
-	// check if the last known position is != to the current position the
-	// item has been moved
-	// move the data in the data set to reflect this
-	if (mHoverPosition > position) {
-	    // move down
+	if (position == mHoverPosition)
+	    return;
 
-	    while (mHoverPosition > position) {
-		((MoveableDataProvider) mDataProvider).move(mHoverPosition, mHoverPosition - 1);
-		mHoverPosition--;
-	    }
+	// a batch drag moves over the unselected items, not the permutation
+	if (mDeferCommit && mBatchPositions == null) {
+	    mPermutation.move(mHoverPosition, position);
+	}
 
-	} else {
-	    while (mHoverPosition < position) {
-		((MoveableDataProvider) mDataProvider).move(mHoverPosition, mHoverPosition + 1);
-		mHoverPosition++;
-	    }
+	// only the rows between the old and new position have changed
+	int lastPosition = mHoverPosition;
+	mHoverPosition = position;
+	refreshRows(lastPosition, position);
+
+    }
+
+    /**
+     * Commits the pending move to the current data provider before it is
+     * swapped, so it is not lost if the data is reloaded during a drag
+     */
+    @Override
+    protected void onReloadData() {
+	if (mBatchPositions != null) {
+	    // the positions of the selection are no longer valid
+	    mBatchPositions = null;
+	    mBatchOthers = null;
+	    mHoverPosition = -1;
+	    mDataPosition = -1;
+	} else if (!mDeferCommit) {
+	    commitPendingMove();
 	}
+	mSelection.clear();
+	if (!hasStableIds()) {
+	    // the moves can only be found again by their ids
+	    mHistory.clear();
+	}
+    }
+
+    /**
+     * If the data changes while an item is being dragged and the ids are
+     * stable the item is found again by its id, so the drag continues with
+     * the same item wherever it now is. If it is no longer in the data the
+     * drag is ended without moving anything. If the ids are not stable the
+     * moves in the undo history can no longer be found, so it is cleared
+     */
+    @Override
+    protected void onDataSetChanged() {
+	if (mRowsChanging)
+	    return;
+	if (!hasStableIds()) {
+	    mHistory.clear();
+	} else if (mHoverPosition != -1 && mBatchPositions == null) {
+	    findDraggedItem();
+	}
+    }
 
+    /**
+     * Tells the list the rows have changed because of a drag or the
+     * selection, without the undo history being cleared
+     */
+    private void notifyRowsChanged() {
+	mRowsChanging = true;
 	notifyDataSetChanged();
+	mRowsChanging = false;
+    }
+
+    /**
+     * should be called by the {@link DragController} NOT the user when a row
+     * of another view type has moved into a row being rebound, so the list
+     * lays out its rows again. The rows that still show their item are not
+     * bound again
+     */
+    void relayoutRows() {
+	mRowsChanging = true;
+	dispatchDataSetChanged();
+	mRowsChanging = false;
+    }
+
+    /**
+     * Sets the position the item being dragged is moved from to where its id
+     * now is. The item stays where it is shown
+     */
+    private void findDraggedItem() {
+	int dataPosition = getDataPositionForId(mDragId);
+	if (dataPosition == -1) {
+	    mHoverPosition = -1;
+	    mDataPosition = -1;
+	    return;
+	}
+
+	int count = mDataProvider.getCount();
+	mHoverPosition = Math.min(mHoverPosition, count - 1);
+	// where the drag started has moved with the item
+	mStartPosition = Math.min(Math.max(mStartPosition + dataPosition - mDataPosition, 0), count - 1);
+	mDataPosition = dataPosition;
+	if (mDeferCommit) {
+	    mPermutation.reset(mDataProvider.getCount());
+	    mPermutation.move(mDataPosition, mHoverPosition);
+	}
+    }
+
+    /**
+     * should be called by the {@link DragController} NOT the user when the
+     * adapter is set on the list
+     * 
+     * @param dragController
+     *            the controller of the list showing this adapter
+     */
+    void setDragController(DragController dragController) {
+	mDragController = dragController;
+    }
+
+    /**
+     * Rebinds just the row that has been prepared when shown in a list with a
+     * {@link DragController}
+     */
+    @Override
+    protected void onRowPrepared(int position) {
+	if (mDragController != null) {
+	    mDragController.rebindRows(position, position);
+	} else {
+	    super.onRowPrepared(position);
+	}
+    }
+
+    /**
+     * Rebinds the rows between two positions, or the whole list if it has no
+     * {@link DragController}
+     * 
+     * @param from
+     * @param to
+     */
+    private void refreshRows(int from, int to) {
+	if (mDragController != null) {
+	    mDragController.rebindRows(Math.min(from, to), Math.max(from, to));
+	} else {
+	    notifyRowsChanged();
+	}
+    }
+
+    /**
+     * Moves the data in the data set from where the item being dragged is in
+     * the data provider to where it is being shown
+     */
+    private void commitPendingMove() {
+
+	if (mDataPosition == mHoverPosition)
+	    return;
+
+	moveInProvider(mDataPosition, mHoverPosition);
+	mDataPosition = mHoverPosition;
+    }
+
+    /**
+     * Moves an item in the data provider with as few calls as it supports
+     * 
+     * @param from
+     * @param to
+     */
+    private void moveInProvider(int from, int to) {
+	invalidateIds();
+	if (mMetricsListener != null) {
+	    long start = System.nanoTime();
+	    int calls = ProviderMoves.move((MoveableDataProvider) mDataProvider, from, to);
+	    mMetricsListener.onProviderMove(calls, System.nanoTime() - start);
+	} else {
+	    ProviderMoves.move((MoveableDataProvider) mDataProvider, from, to);
+	}
+    }
 
+    /**
+     * While a selection is dragged it is shown as a single row
+     */
+    @Override
+    public int getCount() {
+	if (mBatchPositions != null)
+	    return mBatchOthers.length + 1;
+	return super.getCount();
+    }
+
+    /**
+     * Commits any pending move before the data is read. While a deferred drag
+     * is in progress the position is mapped through the in memory order
+     */
+    @Override
+    protected int getDataPosition(int position) {
+	if (mBatchPositions != null) {
+	    // the selection is shown as the item the drag started on
+	    if (position == mHoverPosition)
+		return mDataPosition;
+	    return mBatchOthers[position < mHoverPosition ? position : position - 1];
+	}
+	if (mDeferCommit) {
+	    return mHoverPosition == -1 ? position : mPermutation.get(position);
+	}
+	commitPendingMove();
+	return position;
+    }
+
+    /**
+     * While a deferred drag is in progress the item being dragged is the only
+     * one out of place, the items it has passed are shifted by one towards
+     * where it started
+     */
+    @Override
+    protected int getListPosition(int dataPosition) {
+	if (mBatchPositions != null) {
+	    if (dataPosition == mDataPosition)
+		return mHoverPosition;
+	    int index = Arrays.binarySearch(mBatchOthers, dataPosition);
+	    if (index < 0)
+		return -1;
+	    return index < mHoverPosition ? index : index + 1;
+	}
+	if (!mDeferCommit) {
+	    commitPendingMove();
+	    return dataPosition;
+	}
+	if (mHoverPosition == -1 || dataPosition < Math.min(mDataPosition, mHoverPosition)
+		|| dataPosition > Math.max(mDataPosition, mHoverPosition))
+	    return dataPosition;
+	if (dataPosition == mDataPosition)
+	    return mHoverPosition;
+	return mDataPosition < mHoverPosition ? dataPosition - 1 : dataPosition + 1;
     }
 
     /**
@@ -135,16 +813,35 @@ public class DraggableGenericAdapter extends GenericAdapter {
     @Override
     protected View modifyView(int position, View v, boolean isConverted) {
 
-	// if its a newly created view add the extra views required to allow
-	// dragging to work
-	if (!isConverted) {
-	    btnView((ViewGroup) v);
-	    addPlaceholderView((ViewGroup) v);
+	DraggableViewHolder holder = (DraggableViewHolder) v.getTag();
+
+	if (holder.mDisplacedPosition != -1) {
+	    // the drag controller displaces the row again if it still needs to
+	    ViewAnimations.reset(v);
+	    holder.mDisplacedPosition = -1;
+	}
+
+	v.setSelected(mBatchPositions == null && mSelection.get(position));
+
+	if (mDrawOverlays) {
+	    // drawn by the drag controller, hide any views added before
+	    if (holder.mButtonView != null) {
+		holder.mButtonView.setVisibility(View.GONE);
+		holder.mPlaceHolderView.setVisibility(View.GONE);
+	    }
+	    return v;
+	}
+
+	// if the view does not have them yet add the extra views required to
+	// allow dragging to work
+	if (holder.mButtonView == null) {
+	    holder.mButtonView = btnView((ViewGroup) v);
+	    holder.mPlaceHolderView = addPlaceholderView((ViewGroup) v);
 	}
 
-	RelativeLayout buttonView = (RelativeLayout) v.findViewById(R.id.ma_button_overlay);
+	RelativeLayout buttonView = holder.mButtonView;
 
-	if (mIsDragable) {
+	if (mIsDragable && !mFixedViewTypes.get(holder.mViewType)) {
 	    // has been set to allow drag interactions so show the drag button
 	    buttonView.bringToFront();
 	    buttonView.setVisibility(View.VISIBLE);
@@ -152,7 +849,7 @@ public class DraggableGenericAdapter extends GenericAdapter {
 	    buttonView.setVisibility(View.GONE);
 	}
 
-	RelativeLayout placeHolderView = (RelativeLayout) v.findViewById(R.id.ma_placeholder_overlay);
+	RelativeLayout placeHolderView = holder.mPlaceHolderView;
 
 	if (position == mHoverPosition) {
 	    // if the item being dragged by the user is over this view show the
@@ -174,7 +871,12 @@ public class DraggableGenericAdapter extends GenericAdapter {
 	return v;
     }
 
-    private void addPlaceholderView(ViewGroup vg) {
+    @Override
+    protected ViewHolder createViewHolder(View row, int[] to) {
+	return new DraggableViewHolder(row, to);
+    }
+
+    private RelativeLayout addPlaceholderView(ViewGroup vg) {
 
 	RelativeLayout rl = new RelativeLayout(mContext);
 	rl.setId(R.id.ma_placeholder_overlay);
@@ -185,9 +887,10 @@ public class DraggableGenericAdapter extends GenericAdapter {
 	rl.setId(R.id.ma_placeholder_overlay);
 	rl.setBackgroundDrawable(mPlaceHolderBitmap);
 	vg.addView(rl);
+	return rl;
     }
 
-    private void btnView(ViewGroup vg) {
+    private RelativeLayout btnView(ViewGroup vg) {
 
 	RelativeLayout rl = new RelativeLayout(mContext);
 	rl.setId(R.id.ma_button_overlay);
@@ -205,7 +908,30 @@ public class DraggableGenericAdapter extends GenericAdapter {
 	rl.addView(iv, ivLayoutParams);
 
 	vg.addView(rl, params);
+	return rl;
+    }
 
+    /**
+     * {@link GenericAdapter.ViewHolder} that also holds the overlay views
+     * added to each row to allow dragging
+     */
+    static class DraggableViewHolder extends ViewHolder {
+
+	/** the overlay showing the drag button */
+	RelativeLayout mButtonView;
+	/** the overlay shown when the item being dragged is over the row */
+	RelativeLayout mPlaceHolderView;
+	/**
+	 * the position the row was displaced for by the {@link DragController},
+	 * -1 if it is not displaced
+	 */
+	int mDisplacedPosition = -1;
+	/** the vertical offset the row was displaced by */
+	float mDisplacement;
+
+	DraggableViewHolder(View row, int[] to) {
+	    super(row, to);
+	}
     }
 
 }
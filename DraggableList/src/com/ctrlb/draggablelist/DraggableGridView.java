@@ -0,0 +1,136 @@
+package com.ctrlb.draggablelist;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.util.AttributeSet;
+import android.view.MotionEvent;
+import android.widget.GridView;
+import android.widget.ListAdapter;
+
+/**
+ * A GridView that allows drag and drop functionality for API level 8 and
+ * above. Items are dragged in both directions and the items passed slide
+ * into their new cells. The dragging is done by a {@link DragController},
+ * which can be got with {@link #getDragController()} to change how it drags.
+ * A drag is started from the drag button at the right of a cell.
+ * <p>
+ * Any other {@link android.widget.AbsListView} can drag its items by making
+ * the same calls to a {@link DragController} as this does.
+ * 
+ * @author philip brown
+ * 
+ */
+public class DraggableGridView extends GridView {
+
+    /** does the dragging */
+    private DragController mController;
+
+    public DraggableGridView(Context context) {
+	super(context);
+	init();
+    }
+
+    public DraggableGridView(Context context, AttributeSet attrs) {
+	super(context, attrs);
+	init();
+    }
+
+    public DraggableGridView(Context context, AttributeSet attrs, int defStyle) {
+	super(context, attrs, defStyle);
+	init();
+    }
+
+    private void init() {
+	mController = new DragController(this);
+	mController.setSwapAnimationDuration(DragController.DEFAULT_SWAP_ANIMATION_MS);
+	super.setOnScrollListener(mController.getScrollListener());
+    }
+
+    /**
+     * 
+     * @return the {@link DragController} doing the dragging
+     */
+    public DragController getDragController() {
+	return mController;
+    }
+
+    /**
+     * Sets the listener that will receive notifications every time the grid
+     * scrolls. The grid listens to the scroll itself so the listener is
+     * called from its own
+     */
+    @Override
+    public void setOnScrollListener(OnScrollListener l) {
+	mController.setOnScrollListener(l);
+    }
+
+    /**
+     * Sets the adapter
+     * 
+     * @param adapter
+     *            must be type {@link DraggableGenericAdapter}
+     * @throws RuntimeException
+     *             if the adapter type is not {@link DraggableGenericAdapter}
+     */
+    @Override
+    public void setAdapter(ListAdapter adapter) {
+	if (!(adapter instanceof DraggableGenericAdapter))
+	    throw new RuntimeException("Trying to set adapter that is not type DraggableGenericAdapter on a DraggableGridView");
+	mController.setAdapter((DraggableGenericAdapter) adapter);
+	super.setAdapter(adapter);
+    }
+
+    /**
+     * Set the drag status for the grid
+     * 
+     * @param status
+     *            true = items draggable, false = items not draggable
+     */
+    public void setDragStatus(boolean status) {
+	mController.setDragStatus(status);
+    }
+
+    /**
+     * Get the drag status for the grid
+     * 
+     * @return The drag status (true = items draggable, false = items NOT
+     *         draggable)
+     */
+    public boolean getDragStatus() {
+	return mController.getDragStatus();
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent ev) {
+	if (mController.onTouchEvent(ev))
+	    return true;
+	return super.onTouchEvent(ev);
+    }
+
+    @Override
+    protected void layoutChildren() {
+	mController.beginLayout();
+	super.layoutChildren();
+	mController.endLayout();
+    }
+
+    /**
+     * Draws the View that floats above the grid when the user drags an item
+     * on top of the cells
+     */
+    @Override
+    protected void dispatchDraw(Canvas canvas) {
+	super.dispatchDraw(canvas);
+	mController.draw(canvas);
+    }
+
+    /**
+     * Returns the bitmap used to draw the view being dragged to the pool
+     */
+    @Override
+    protected void onDetachedFromWindow() {
+	super.onDetachedFromWindow();
+	mController.onDetachedFromWindow();
+    }
+
+}
@@ -1,74 +1,152 @@
 package com.ctrlb.draggablelist;
 
 import android.content.Context;
-import android.graphics.Bitmap;
+import android.graphics.Canvas;
 import android.graphics.Color;
-import android.graphics.PixelFormat;
-import android.graphics.drawable.Drawable;
 import android.util.AttributeSet;
-import android.view.Gravity;
 import android.view.MotionEvent;
 import android.view.View;
-import android.view.WindowManager;
-import android.widget.ImageView;
 import android.widget.ListAdapter;
 import android.widget.ListView;
 
 /**
- * A ListView that allows drag an drop functionality for API level 8 and above
+ * A ListView that allows drag an drop functionality for API level 8 and above.
+ * The dragging is done by a {@link DragController}
  * @author philip brown
  *
  */
 
 public class DraggableListView extends ListView {
 
-    static final int SCROLL_UP = 1;
-    static final int SCROLL_DOWN = 2;
+    /** does the dragging */
+    private DragController mController;
+
+    public DraggableListView(Context context) {
+	super(context);
+	init();
+    }
+
+    public DraggableListView(Context context, AttributeSet attrs) {
+	super(context, attrs);
+	init();
+    }
+
+    public DraggableListView(Context context, AttributeSet attrs, int defStyle) {
+	super(context, attrs, defStyle);
+	init();
+    }
+
+    private void init() {
+	mController = new DragController(this);
+	super.setOnScrollListener(mController.getScrollListener());
+    }
 
-    /** whether the list view should respond to drag gestures */
-    private boolean mIsDragging = false;
-    /** the adapter for the list data */
-    private DraggableGenericAdapter mAdapter;
     /**
-     * the runnable used to execute the auto scroll on a seperat thread when the
-     * top or bottom item in the list is dragged over
+     * 
+     * @return the {@link DragController} doing the dragging
      */
-    private Runnable mAutoScrollRunnable;
-    /** the layout params used to move the floating view */
-    private WindowManager.LayoutParams mWindowParams;
-    /** the window manager used to move the floating view */
-    private WindowManager mWindowManager;
+    public DragController getDragController() {
+	return mController;
+    }
+
     /**
-     * The bitmap used to create the drag view this is a copy of the view in the
-     * list being dragged
+     * Sets the listener that will receive notifications every time the list
+     * scrolls. The list listens to the scroll itself so the listener is
+     * called from its own
      */
-    private Bitmap mDragBitmap;
-    /** The {@link android.view.View} being dragged */
-    private View mDragView;
-    /** the height of the view being dragged */
-    private int mDragViewHeight;
-
-    /** true if the view is being dragged */
-    private boolean mDragStarted;
-    /** the direction to auto scrol */
-    private int mAutoScrollDirection;
-    /** the color the background of the floating view will be set to */
-    private int mHoverColor = Color.GREEN;
+    @Override
+    public void setOnScrollListener(OnScrollListener l) {
+	mController.setOnScrollListener(l);
+    }
+
     /**
-     * the alpha the floating view will be set to 1.0 = opaque 0.0 = transparent
+     * Sets the number of rows ahead of the direction the list is scrolling
+     * that are loaded before they are shown. More rows are loaded when the
+     * list scrolls fast. The adapter's data provider must be a
+     * {@link PrefetchableDataProvider}, or the adapter must be binding
+     * asynchronously, for this to have any effect. The hit and miss counts of
+     * the adapter can be used to tune it
+     * 
+     * @param distance
+     *            the number of rows, 0 to turn off prefetching
      */
-    private float mHoverAlpha = 0.5f;
+    public void setPrefetchDistance(int distance) {
+	mController.setPrefetchDistance(distance);
+    }
 
-    public DraggableListView(Context context) {
-	super(context);
+    /**
+     * Sets the size of the areas at the top and bottom of the list that
+     * scroll the list when an item is dragged into them. The further into the
+     * area the faster the list scrolls
+     * 
+     * @param edgeSize
+     *            the size in pixels, 0 to turn off auto scrolling
+     */
+    public void setAutoScrollEdgeSize(int edgeSize) {
+	mController.setAutoScrollEdgeSize(edgeSize);
     }
 
-    public DraggableListView(Context context, AttributeSet attrs) {
-	super(context, attrs);
+    /**
+     * Sets the fastest the list will scroll when an item is dragged to the
+     * edge of an auto scroll area
+     * 
+     * @param maxSpeed
+     *            the speed in pixels per second
+     */
+    public void setAutoScrollMaxSpeed(int maxSpeed) {
+	mController.setAutoScrollMaxSpeed(maxSpeed);
     }
 
-    public DraggableListView(Context context, AttributeSet attrs, int defStyle) {
-	super(context, attrs, defStyle);
+    /**
+     * Set whether the drag buttons and the placeholder are drawn by the list
+     * over the rows instead of being added to each row as views. Drawing them
+     * leaves the row layouts untouched, so they are lighter to measure and
+     * lay out and do not need to be a {@link android.view.ViewGroup}. Should
+     * be set before the adapter is set so no overlay views are added
+     * 
+     * @param drawOverlays
+     *            true to draw them over the rows
+     */
+    public void setDrawOverlays(boolean drawOverlays) {
+	mController.setDrawOverlays(drawOverlays);
+    }
+
+    /**
+     * Set whether the rows move out of the way of the item being dragged by
+     * animating their translation, on API level 12 and above. The data is
+     * not moved and the rows are not rebound until the item is dropped, when
+     * a single move is made. Otherwise the data is moved and the rows are
+     * rebound each time the item passes a row. Selections dragged together
+     * are always moved the second way
+     * 
+     * @param displaceRows
+     *            true to animate the rows out of the way
+     */
+    public void setDisplaceRows(boolean displaceRows) {
+	mController.setDisplaceRows(displaceRows);
+    }
+
+    /**
+     * Set the time taken to slide the rows the item being dragged passes when
+     * they are rebound in their new order. The default is 0, the rows jump
+     * 
+     * @param duration
+     *            the time in milliseconds, 0 for the rows to jump
+     */
+    public void setSwapAnimationDuration(long duration) {
+	mController.setSwapAnimationDuration(duration);
+    }
+
+    /**
+     * Set the time taken to move the rows out of the way of the item being
+     * dragged when they are displaced, see {@link #setDisplaceRows(boolean)}.
+     * The default is {@link DragController#DEFAULT_DISPLACE_ANIMATION_MS}
+     * 
+     * @param duration
+     *            the time in milliseconds, 0 for the rows to jump
+     */
+    public void setDisplaceAnimationDuration(long duration) {
+	mController.setDisplaceAnimationDuration(duration);
     }
 
     /**
@@ -79,7 +157,7 @@ public class DraggableListView extends ListView {
      *            the {@link Color} constant
      */
     public void setHoverColor(int hoverColor) {
-	this.mHoverColor = hoverColor;
+	mController.setHoverColor(hoverColor);
     }
 
     /**
@@ -90,7 +168,39 @@ public class DraggableListView extends ListView {
      * the float value for the alpha
      */
     public void setHoverAlpha(float hoverAlpha) {
-	this.mHoverAlpha = hoverAlpha;
+	mController.setHoverAlpha(hoverAlpha);
+    }
+
+    /**
+     * Sets the pool the bitmaps used to draw the view being dragged are
+     * borrowed from. A pool can be shared between lists
+     * 
+     * @param bitmapPool
+     *            the {@link BitmapPool}
+     */
+    public void setBitmapPool(BitmapPool bitmapPool) {
+	mController.setBitmapPool(bitmapPool);
+    }
+
+    /**
+     * Get the pool the bitmaps used to draw the view being dragged are
+     * borrowed from
+     * 
+     * @return the {@link BitmapPool}
+     */
+    public BitmapPool getBitmapPool() {
+	return mController.getBitmapPool();
+    }
+
+    /**
+     * Should be called from the activity's or fragment's onTrimMemory to
+     * release the bitmaps held by the pool
+     * 
+     * @param level
+     *            the level passed to onTrimMemory
+     */
+    public void onTrimMemory(int level) {
+	mController.getBitmapPool().trimMemory(level);
     }
 
     /**
@@ -105,8 +215,22 @@ public class DraggableListView extends ListView {
     public void setAdapter(ListAdapter adapter) {
 	if (!(adapter instanceof DraggableGenericAdapter))
 	    throw new RuntimeException("Trying to set adapter that is not type MovableAdapter on a MovableListView");
-	mAdapter = (DraggableGenericAdapter) adapter;
-	super.setAdapter(mAdapter);
+	mController.setAdapter((DraggableGenericAdapter) adapter);
+	super.setAdapter(adapter);
+    }
+
+    /**
+     * Set a listener to measure the frames, binding, data provider moves,
+     * drawing of the floating view and auto scrolling while dragging. The
+     * listener is also set on the adapter. Nothing is measured when no
+     * listener is set
+     * 
+     * @param listener
+     *            the {@link DragMetricsListener}, for example a
+     *            {@link DragMetrics}, or null to stop measuring
+     */
+    public void setMetricsListener(DragMetricsListener listener) {
+	mController.setMetricsListener(listener);
     }
 
     /**
@@ -116,8 +240,7 @@ public class DraggableListView extends ListView {
      *            true = items draggable, false = items not draggable
      */
     public void setDragStatus(boolean status) {
-	mIsDragging = status;
-	mAdapter.setDragStatus(status);
+	mController.setDragStatus(status);
     }
 
     /**
@@ -127,7 +250,7 @@ public class DraggableListView extends ListView {
      *         draggable)
      */
     public boolean getDragStatus() {
-	return mIsDragging;
+	return mController.getDragStatus();
     }
 
     /**
@@ -136,62 +259,20 @@ public class DraggableListView extends ListView {
      */
     @Override
     public boolean onTouchEvent(MotionEvent ev) {
-
-	if (mIsDragging) {
-
-	    int y = (int) ev.getY();
-	    int x = (int) ev.getX();
-
-	    switch (ev.getAction()) {
-	    case MotionEvent.ACTION_DOWN:
-
-		if (x > getWidth() - mAdapter.getDragIconWidth()) {
-
-		    mDragStarted = true;
-		    performDrag(ev);
-		    mAdapter.setMoveStart(pointToPositionFix(x, y));
-		    return true;
-		}
-
-		break;
-	    case MotionEvent.ACTION_MOVE:
-		if (mDragStarted) {
-		    performDrag(ev);
-
-		    int position = pointToPositionFix(x, y);
-		    mAdapter.move(position);
-
-		    // if at top or bottom of list scroll
-		    if (position == getLastVisiblePosition()) {
-			autoScroll();
-			mAutoScrollDirection = SCROLL_DOWN;
-		    } else if (position == getFirstVisiblePosition()) {
-			autoScroll();
-			mAutoScrollDirection = SCROLL_UP;
-		    } else {
-			removeCallbacks(mAutoScrollRunnable);
-		    }
-		    return true;
-		}
-		break;
-	    case MotionEvent.ACTION_UP:
-		if (mDragStarted) {
-		    // drag has come to an end
-		    mAdapter.setMoveEnd();
-		    stopDragging();
-		    mDragStarted = false;
-		    removeCallbacks(mAutoScrollRunnable);
-		    return true;
-		}
-		break;
-	    default:
-		break;
-	    }
-
-	}
+	if (mController.onTouchEvent(ev))
+	    return true;
 	return super.onTouchEvent(ev);
     }
 
+    /**
+     * 
+     * @return the smoothed speed of the drag in pixels per second, negative
+     *         when dragging up
+     */
+    float getDragVelocity() {
+	return mController.getDragVelocity();
+    }
+
     /**
      * Gets the {@link View} that is being used to display the data at a given
      * position in the underlying data set
@@ -202,167 +283,33 @@ public class DraggableListView extends ListView {
      *         given position
      */
     public View getViewAtPosition(int position) {
-	return getChildAt(position - getFirstVisiblePosition());
-
-    }
-
-    /**
-     * Moves the View that floats above the list when the user drags a list
-     * item. If the view does not yet exist create the view
-     * 
-     * @param ev
-     *            the {@link MotionEvent} to be used to perform the drag
-     *            functionality
-     */
-    private void performDrag(MotionEvent ev) {
-
-	if (mDragView == null) {
-
-	    // create the drag view
-
-	    int position = pointToPositionFix((int) ev.getX(), (int) ev.getY());
-
-	    if (position != INVALID_POSITION) {
-
-		Context context = getContext();
-
-		if (mWindowManager == null) {
-		    mWindowManager = (WindowManager) context.getSystemService(Context.WINDOW_SERVICE);
-		}
-
-		View dragStartView = getViewAtPosition(position);
-
-		mDragViewHeight = dragStartView.getMeasuredHeight();
-
-		Drawable bg = dragStartView.getBackground();
-
-		dragStartView.setBackgroundColor(mHoverColor);
-		dragStartView.setDrawingCacheEnabled(true);
-		mDragBitmap = Bitmap.createBitmap(dragStartView.getDrawingCache());
-		dragStartView.setBackgroundDrawable(bg);
-
-		mWindowParams = new WindowManager.LayoutParams();
-		mWindowParams.gravity = Gravity.TOP | Gravity.LEFT;
-
-		mWindowParams.height = WindowManager.LayoutParams.WRAP_CONTENT;
-		mWindowParams.width = WindowManager.LayoutParams.WRAP_CONTENT;
-		mWindowParams.flags = WindowManager.LayoutParams.FLAG_NOT_FOCUSABLE
-			| WindowManager.LayoutParams.FLAG_NOT_TOUCHABLE
-			| WindowManager.LayoutParams.FLAG_KEEP_SCREEN_ON
-			| WindowManager.LayoutParams.FLAG_LAYOUT_IN_SCREEN
-			| WindowManager.LayoutParams.FLAG_LAYOUT_NO_LIMITS;
-		mWindowParams.format = PixelFormat.TRANSLUCENT;
-		mWindowParams.windowAnimations = 0;
-
-		mWindowParams.alpha = mHoverAlpha;
-
-		ImageView v = new ImageView(context);
-		v.setPadding(0, 0, 0, 0);
-		v.setImageBitmap(mDragBitmap);
-
-		mWindowParams.x = 0; // - mDragPointX + mXOffset;
-		mWindowParams.y = (int) ev.getRawY() - mDragViewHeight / 2;
-		mWindowManager.addView(v, mWindowParams);
-		mDragView = v;
-	    }
-	} else {
-	    mWindowParams.x = 0;
-	    mWindowParams.y = (int) ev.getRawY() - mDragViewHeight / 2;
-	    mWindowManager.updateViewLayout(mDragView, mWindowParams);
-	}
-
+	return mController.getViewAtPosition(position);
     }
 
-    /**
-     * Removes the View that floats above the list when the user drags a list
-     * item and tidies up associated resources
-     */
-    private void stopDragging() {
-
-	if (mDragView != null) {
-	    mDragView.setVisibility(GONE);
-	    mWindowManager.removeView(mDragView);
-	    mDragView = null;
-	}
-	if (mDragBitmap != null) {
-	    mDragBitmap.recycle();
-	    mDragBitmap = null;
-	}
+    @Override
+    protected void layoutChildren() {
+	mController.beginLayout();
+	super.layoutChildren();
+	mController.endLayout();
     }
 
     /**
-     * Fix so that if the point is actually on the divider it returns the
-     * position for the item above
-     * 
-     * @param x
-     *            coordinate
-     * @param y
-     *            coordinate
-     * @return the position in the underlying data set re to the x,y coordinates
-     *         on the screen
+     * Draws the View that floats above the list when the user drags a list
+     * item on top of the rows
      */
-
-    private int pointToPositionFix(int x, int y) {
-
-	int position = INVALID_POSITION;
-
-	position = super.pointToPosition(x, y);
-
-	if (position == INVALID_POSITION) {
-	    // fix for if y is on divider. return position of row above
-	    position = super.pointToPosition(x, y - getDividerHeight());
-	}
-
-	return position;
-
+    @Override
+    protected void dispatchDraw(Canvas canvas) {
+	super.dispatchDraw(canvas);
+	mController.draw(canvas);
     }
 
     /**
-     * Starts a new thread to scroll the list if the user drags the item to the
-     * top or bottom of the list and more items are available
+     * Returns the bitmap used to draw the view being dragged to the pool
      */
-
-    private void autoScroll() {
-
-	if (mAutoScrollRunnable == null) {
-
-	    mAutoScrollRunnable = new Runnable() {
-
-		public void run() {
-
-		    if (mAutoScrollDirection == SCROLL_DOWN) {
-
-			int lastPos = getLastVisiblePosition();
-			int count = getCount();
-
-			smoothScrollToPosition(lastPos + 1);
-
-			if (lastPos == (count - 1)) {
-			    // the end
-			    mAdapter.move(count - 1);
-			} else {
-			    mAdapter.move(lastPos + 1);
-			    postDelayed(this, 100);
-			}
-		    } else {
-			int firstPos = getFirstVisiblePosition();
-
-			smoothScrollToPosition(firstPos - 1);
-
-			if (firstPos == 0) {
-			    // the end
-			    mAdapter.move(0);
-			} else {
-			    mAdapter.move(firstPos - 1);
-			    postDelayed(this, 100);
-			}
-		    }
-
-		}
-	    };
-	}
-
-	post(mAutoScrollRunnable);
+    @Override
+    protected void onDetachedFromWindow() {
+	super.onDetachedFromWindow();
+	mController.onDetachedFromWindow();
     }
 
 }
@@ -0,0 +1,146 @@
+package com.ctrlb.draggablelist;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.view.Choreographer;
+import android.view.View;
+
+/**
+ * Runs a callback once at the start of the next frame. On API level 16 and
+ * above this uses {@link Choreographer} so the callback runs in step with the
+ * display, on older versions the callback is posted to the view with a delay
+ * of one frame.
+ * 
+ * @author philip brown
+ * 
+ */
+abstract class FrameScheduler {
+
+    /** the delay between frames used when Choreographer is not available */
+    static final long FRAME_DELAY_MILLIS = 16;
+
+    /**
+     * The callback run on the next frame
+     */
+    static interface Callback {
+
+	/**
+	 * called at the start of the frame
+	 * 
+	 * @param frameTimeNanos
+	 *            the time the frame started in the {@link System#nanoTime()}
+	 *            time base
+	 */
+	void doFrame(long frameTimeNanos);
+    }
+
+    protected final Callback mCallback;
+    protected boolean mScheduled;
+
+    FrameScheduler(Callback callback) {
+	mCallback = callback;
+    }
+
+    /**
+     * Creates the scheduler for the API level of the device
+     * 
+     * @param view
+     *            the view used to post the callback on older API levels
+     * @param callback
+     *            the callback to run
+     * @return the scheduler
+     */
+    static FrameScheduler create(View view, Callback callback) {
+	if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+	    return new ChoreographerScheduler(callback);
+	}
+	return new PostScheduler(view, callback);
+    }
+
+    /**
+     * Runs the callback on the next frame. Does nothing if it is already
+     * scheduled so the callback runs at most once per frame
+     */
+    final void schedule() {
+	if (!mScheduled) {
+	    mScheduled = true;
+	    post();
+	}
+    }
+
+    /**
+     * Stops the callback being run if it has been scheduled
+     */
+    final void cancel() {
+	if (mScheduled) {
+	    mScheduled = false;
+	    remove();
+	}
+    }
+
+    /**
+     * 
+     * @return true if the callback will be run on the next frame
+     */
+    final boolean isScheduled() {
+	return mScheduled;
+    }
+
+    final void run(long frameTimeNanos) {
+	mScheduled = false;
+	mCallback.doFrame(frameTimeNanos);
+    }
+
+    abstract void post();
+
+    abstract void remove();
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private static class ChoreographerScheduler extends FrameScheduler implements Choreographer.FrameCallback {
+
+	ChoreographerScheduler(Callback callback) {
+	    super(callback);
+	}
+
+	@Override
+	public void doFrame(long frameTimeNanos) {
+	    run(frameTimeNanos);
+	}
+
+	@Override
+	void post() {
+	    Choreographer.getInstance().postFrameCallback(this);
+	}
+
+	@Override
+	void remove() {
+	    Choreographer.getInstance().removeFrameCallback(this);
+	}
+    }
+
+    private static class PostScheduler extends FrameScheduler implements Runnable {
+
+	private final View mView;
+
+	PostScheduler(View view, Callback callback) {
+	    super(callback);
+	    mView = view;
+	}
+
+	@Override
+	public void run() {
+	    run(System.nanoTime());
+	}
+
+	@Override
+	void post() {
+	    mView.postDelayed(this, FRAME_DELAY_MILLIS);
+	}
+
+	@Override
+	void remove() {
+	    mView.removeCallbacks(this);
+	}
+    }
+
+}
@@ -1,8 +1,12 @@
 package com.ctrlb.draggablelist;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.concurrent.Executor;
 
 import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -19,13 +23,67 @@ import android.widget.TextView;
  */
 public class GenericAdapter extends BaseAdapter {
 
+    /** logs the views created, off by default */
+    private static final boolean DEBUG = false;
+    private static final String TAG = "talkinginterval";
+    /** the most changed ids remembered before every row is bound again */
+    private static final int MAX_CHANGED_IDS = 256;
+
     protected Context mContext;
     protected GenericDataProvider mDataProvider;
-    private int mViewResourceId;
-    private String[] mFrom;
-    private int[] mTo;
+    /** the layout and binding for each view type */
+    private final ArrayList<RowType> mRowTypes = new ArrayList<RowType>();
+    /** picks the view type for each row, null if there is only one */
+    private ViewTypeResolver mViewTypeResolver;
     private final LayoutInflater mInflater;
     private ViewBinder mViewBinder;
+    private TypedViewBinder mTypedViewBinder;
+    /** the data provider the rows are bound from */
+    private TypedDataProvider mTypedDataProvider;
+    /** prepares rows on a background thread, null if binding synchronously */
+    private AsyncRowLoader mRowLoader;
+    private RowFormatter mRowFormatter;
+    /** the number of rows ahead of the scroll direction prepared */
+    private int mPrefetchDistance;
+    /** the last position bound asynchronously, used for the scroll direction */
+    private int mLastAsyncPosition;
+    private Handler mHandler;
+    /** measures the binding of rows, null if nothing is measured */
+    protected DragMetricsListener mMetricsListener;
+    /** finds the position of an item by its id */
+    private final IdIndex mIdIndex = new IdIndex();
+    /**
+     * incremented when the content of the data may have changed, rows bound
+     * in an earlier generation are bound again
+     */
+    private int mContentGeneration;
+    /**
+     * the change number of the latest diffed reload of each id whose content
+     * changed in this generation, rows showing them bound before that reload
+     * are bound again
+     */
+    private final HashMap<Long, Integer> mChangedIds = new HashMap<Long, Integer>();
+    /** incremented for each diffed reload that changes the content of items */
+    private int mChangeNumber;
+    /** incremented when the positions in the data provider change */
+    private int mDataGeneration;
+    /** incremented for each diffed reload so only the latest is applied */
+    private int mReloadGeneration;
+    /** the number of rows whose data was loaded or prepared when bound */
+    private int mPrefetchHits;
+    /** the number of rows whose data was not loaded or prepared when bound */
+    private int mPrefetchMisses;
+    /** true if notifyDataSetChanged has been posted */
+    private boolean mNotifyPosted;
+    private final Runnable mNotifyRunnable = new Runnable() {
+
+	@Override
+	public void run() {
+	    mNotifyPosted = false;
+	    // only the rows that were waiting for their values are bound again
+	    dispatchDataSetChanged();
+	}
+    };
 
     /**
      * Constructor
@@ -40,15 +98,15 @@ public class GenericAdapter extends BaseAdapter {
      *            an array of keys in the data provided by the
      *            {@link GenericDataProvider} used to bind to the rows views
      * @param to
-     *            an array of view resource ids that the data will be bound to
+     *            an array of view resource ids that the data will be bound to.
+     *            If the dataProvider is a {@link TypedDataProvider} the data is
+     *            read by column, otherwise it is read from the {@link HashMap}
      */
     public GenericAdapter(Context context, GenericDataProvider dataProvider, int viewResourceId, String[] from, int[] to) {
 	mContext = context;
-	mDataProvider = dataProvider;
-	mViewResourceId = viewResourceId;
-	mFrom = from;
-	mTo = to;
+	mRowTypes.add(new RowType(viewResourceId, from, to));
 	mInflater = LayoutInflater.from(context);
+	setDataProvider(dataProvider);
 
     }
 
@@ -59,59 +117,582 @@ public class GenericAdapter extends BaseAdapter {
 	return mDataProvider.getCount();
     }
 
+    @Override
+    public int getViewTypeCount() {
+	return mRowTypes.size();
+    }
+
+    @Override
+    public int getItemViewType(int position) {
+	if (mViewTypeResolver == null)
+	    return 0;
+	return mViewTypeResolver.getViewType(mDataProvider, getDataPosition(position));
+    }
+
+    /**
+     * Adds a view type with its own layout and binding, used for the rows the
+     * {@link ViewTypeResolver} gives its index to. The rows of each type are
+     * only recycled for rows of the same type. The view types must be added
+     * before the adapter is set on the list
+     * 
+     * @param viewResourceId
+     *            the view resource for the rows of this type
+     * @param from
+     *            an array of keys in the data used to bind to the rows views
+     * @param to
+     *            an array of view resource ids that the data will be bound to
+     * @return the index of the view type, the constructor's layout is 0
+     */
+    public int addViewType(int viewResourceId, String[] from, int[] to) {
+	RowType rowType = new RowType(viewResourceId, from, to);
+	if (mTypedDataProvider != null) {
+	    rowType.resolveColumns(mTypedDataProvider);
+	}
+	mRowTypes.add(rowType);
+	return mRowTypes.size() - 1;
+    }
+
+    /**
+     * 
+     * @param view
+     *            a row created by this adapter
+     * @param position
+     * @return true if the row can be bound in place to the data at the
+     *         position, false if it was created for another view type
+     */
+    boolean canRebind(View view, int position) {
+	return mRowTypes.size() == 1 || ((ViewHolder) view.getTag()).mViewType == getItemViewType(position);
+    }
+
+    /**
+     * Set the {@link ViewTypeResolver} that picks the view type of each row
+     * 
+     * @param viewTypeResolver
+     */
+    public void setViewTypeResolver(ViewTypeResolver viewTypeResolver) {
+	mViewTypeResolver = viewTypeResolver;
+	mContentGeneration++;
+    }
+
     @Override
     public HashMap<String, String> getItem(int position) {
-	return mDataProvider.getItem(position);
+	return mDataProvider.getItem(getDataPosition(position));
+    }
+
+    /**
+     * 
+     * @return true if the data provider is a {@link StableIdDataProvider}
+     */
+    @Override
+    public boolean hasStableIds() {
+	return mDataProvider instanceof StableIdDataProvider;
     }
 
     @Override
     public long getItemId(int position) {
-	return mDataProvider.getItemId(position);
+	return mDataProvider.getItemId(getDataPosition(position));
     }
 
     @Override
     public View getView(int position, View convertView, ViewGroup parent) {
 	View view = convertView;
 	boolean isConverted = true;
+	long start = mMetricsListener != null ? System.nanoTime() : 0;
 
 	if (view == null) {
 
-	    Log.v("talkinginterval", "create view " + position);
+	    if (DEBUG)
+		Log.v(TAG, "create view " + position);
 
-	    view = mInflater.inflate(mViewResourceId, parent, false);
+	    int viewType = getItemViewType(position);
+	    RowType rowType = mRowTypes.get(viewType);
+	    view = mInflater.inflate(rowType.mViewResourceId, parent, false);
+	    ViewHolder holder = createViewHolder(view, rowType.mTo);
+	    holder.mViewType = viewType;
+	    view.setTag(holder);
 	    isConverted = false;
 	}
 
 	modifyView(position, view, isConverted);
 
-	for (int i = 0; i < mTo.length; i++) {
+	if (mDataProvider instanceof PrefetchableDataProvider) {
+	    if (((PrefetchableDataProvider) mDataProvider).isLoaded(getDataPosition(position))) {
+		mPrefetchHits++;
+	    } else {
+		mPrefetchMisses++;
+	    }
+	}
+
+	ViewHolder holder = (ViewHolder) view.getTag();
 
-	    View v = view.findViewById(mTo[i]);
-	    String from = mFrom[i];
-	    HashMap<String, String> data = mDataProvider.getItem(position);
+	// a row already showing the current content for its item is not bound
+	// again, only possible when the ids are stable
+	boolean stableIds = hasStableIds();
+	long id = 0;
+	if (stableIds) {
+	    id = getItemId(position);
+	    if (holder.mBoundGeneration == mContentGeneration && holder.mBoundId == id
+		    && !isChangedSince(id, holder.mBoundChange))
+		return view;
+	}
+	holder.mBoundGeneration = -1;
 
-	    String d = data.get(mFrom[i]);
+	boolean bound = true;
+	if (mRowLoader != null) {
+	    bound = bindViewAsync(view, holder, position);
+	} else {
+	    bindView(view, holder, getDataPosition(position));
+	}
 
-	    boolean bound = false;
-	    if (mViewBinder != null) {
-		bound = mViewBinder.setViewValue(view, v, d, from);
-	    }
+	if (stableIds && bound) {
+	    holder.mBoundId = id;
+	    holder.mBoundGeneration = mContentGeneration;
+	    holder.mBoundChange = mChangeNumber;
+	}
+
+	if (mMetricsListener != null) {
+	    mMetricsListener.onRowBound(position, !isConverted, System.nanoTime() - start);
+	}
 
-	    if (!bound) {
+	return view;
+    }
 
-		if (v instanceof TextView) {
+    /**
+     * Binds the prepared values for the row, or a stub if they are not ready
+     * and starts preparing them. Then prepares the rows ahead of the
+     * direction the list is scrolling
+     * 
+     * @param row
+     *            the top level view for the row in the list
+     * @param holder
+     *            the holder for the rows views
+     * @param position
+     *            the position in the list
+     * @return true if the prepared values were bound, false if a stub was
+     */
+    private boolean bindViewAsync(View row, ViewHolder holder, int position) {
+
+	int dataPosition = getDataPosition(position);
+	long id = mDataProvider.getItemId(dataPosition);
+	RowType rowType = mRowTypes.get(holder.mViewType);
+	CharSequence[] values = mRowLoader.get(id, holder.mViewType);
 
-		    ((TextView) v).setText(d);
+	if (!(mDataProvider instanceof PrefetchableDataProvider)) {
+	    if (values != null) {
+		mPrefetchHits++;
+	    } else {
+		mPrefetchMisses++;
+	    }
+	}
 
+	boolean bound = values != null;
+	if (bound) {
+	    for (int i = 0; i < values.length; i++) {
+		View v = holder.mViews[i];
+		if (mViewBinder != null && mViewBinder.setViewValue(row, v, asString(values[i]), rowType.mFrom[i]))
+		    continue;
+		if (v instanceof TextView) {
+		    ((TextView) v).setText(values[i]);
 		} else {
 		    throw new IllegalStateException(v.getClass().getName() + " is not a "
 			    + " view that can be bounds by this Adapter");
 		}
 	    }
+	} else {
+	    bindStub(row, holder, position);
+	    mRowLoader.request(mTypedDataProvider, dataPosition, id, holder.mViewType);
+	}
 
+	// prepare the rows the list is scrolling towards
+	int step = position >= mLastAsyncPosition ? 1 : -1;
+	mLastAsyncPosition = position;
+	int count = getCount();
+	for (int i = 1; i <= mPrefetchDistance; i++) {
+	    int next = position + step * i;
+	    if (next < 0 || next >= count)
+		break;
+	    int nextDataPosition = getDataPosition(next);
+	    mRowLoader.request(mTypedDataProvider, nextDataPosition, mDataProvider.getItemId(nextDataPosition),
+		    getItemViewType(next));
 	}
+	return bound;
+    }
 
-	return view;
+    /**
+     * Loads the data for the rows between two positions before they are
+     * shown. Asks the data provider to load them if it is a
+     * {@link PrefetchableDataProvider} and prepares them when binding
+     * asynchronously
+     * 
+     * @param from
+     *            the first position in the list
+     * @param to
+     *            the last position in the list
+     */
+    void prefetch(int from, int to) {
+	if (mDataProvider instanceof PrefetchableDataProvider) {
+	    int dataFrom = getDataPosition(from);
+	    int dataTo = getDataPosition(to);
+	    ((PrefetchableDataProvider) mDataProvider).loadRange(Math.min(dataFrom, dataTo), Math.max(dataFrom, dataTo));
+	}
+	if (mRowLoader != null) {
+	    for (int position = from; position <= to; position++) {
+		int dataPosition = getDataPosition(position);
+		mRowLoader.request(mTypedDataProvider, dataPosition, mDataProvider.getItemId(dataPosition),
+			getItemViewType(position));
+	    }
+	}
+    }
+
+    /**
+     * 
+     * @return the number of rows whose data was already loaded, or prepared
+     *         when binding asynchronously, when they were bound
+     */
+    public int getPrefetchHitCount() {
+	return mPrefetchHits;
+    }
+
+    /**
+     * 
+     * @return the number of rows whose data was not loaded, or prepared when
+     *         binding asynchronously, when they were bound
+     */
+    public int getPrefetchMissCount() {
+	return mPrefetchMisses;
+    }
+
+    /**
+     * Sets the prefetch hit and miss counts back to zero
+     */
+    public void resetPrefetchCounts() {
+	mPrefetchHits = 0;
+	mPrefetchMisses = 0;
+    }
+
+    /**
+     * Binds a row whose values are still being prepared. The default clears
+     * the text of the TextViews
+     * 
+     * @param row
+     *            the top level view for the row in the list
+     * @param holder
+     *            the holder for the rows views
+     * @param position
+     *            the position in the list
+     */
+    protected void bindStub(View row, ViewHolder holder, int position) {
+	for (int i = 0; i < holder.mViews.length; i++) {
+	    if (holder.mViews[i] instanceof TextView) {
+		((TextView) holder.mViews[i]).setText(null);
+	    }
+	}
+    }
+
+    /**
+     * Prepares the values for a row, called on the background thread
+     * 
+     * @param data
+     *            the data provider to read from
+     * @param position
+     *            the position in the data provider
+     * @param id
+     *            the id of the item expected at the position
+     * @param viewType
+     *            the view type of the row
+     * @return the values or null if the item is no longer at the position
+     */
+    private CharSequence[] prepareRow(TypedDataProvider data, int position, long id, int viewType) {
+	RowType rowType = mRowTypes.get(viewType);
+	if (data instanceof HashMapTypedDataProvider) {
+	    synchronized (data) {
+		((HashMapTypedDataProvider) data).invalidate();
+		return formatRow(data, position, id, rowType);
+	    }
+	}
+	return formatRow(data, position, id, rowType);
+    }
+
+    private CharSequence[] formatRow(TypedDataProvider data, int position, long id, RowType rowType) {
+	if (position >= data.getCount() || data.getItemId(position) != id)
+	    return null;
+
+	CharSequence[] values = new CharSequence[rowType.mTo.length];
+	for (int i = 0; i < values.length; i++) {
+	    int column = rowType.mColumns[i];
+	    if (mRowFormatter != null) {
+		values[i] = mRowFormatter.formatValue(data, position, column, rowType.mFrom[i]);
+	    } else {
+		int type = data.getColumnType(column);
+		if (type == TypedDataProvider.TYPE_INT) {
+		    values[i] = String.valueOf(data.getInt(position, column));
+		} else if (type == TypedDataProvider.TYPE_LONG) {
+		    values[i] = String.valueOf(data.getLong(position, column));
+		} else {
+		    values[i] = data.getCharSequence(position, column);
+		}
+	    }
+	}
+	return values;
+    }
+
+    private static String asString(CharSequence cs) {
+	return cs == null ? null : cs.toString();
+    }
+
+    /**
+     * Called on the main thread when the values for a row have been prepared
+     * in the background. The default redraws the list once for all the rows
+     * ready before the next frame, subclasses that can rebind a single row can
+     * override this
+     * 
+     * @param position
+     *            the position in the list the item now is at
+     */
+    protected void onRowPrepared(int position) {
+	if (!mNotifyPosted) {
+	    mNotifyPosted = true;
+	    mHandler.post(mNotifyRunnable);
+	}
+    }
+
+    /**
+     * Binds the rows from values prepared on a background thread so reading
+     * and formatting the data does not block scrolling. The values are kept
+     * in a cache by item id and a stub is bound while they are prepared. The
+     * data provider must allow its data to be read from the background
+     * thread and its item ids must be unique. {@link TypedViewBinder}s are
+     * not used, a {@link ViewBinder} is given the prepared values
+     * 
+     * @param executor
+     *            the executor the rows are prepared on or null to bind the
+     *            rows on the main thread
+     * @param cacheSize
+     *            the number of prepared rows kept
+     * @param prefetchDistance
+     *            the number of rows ahead of the direction the list is
+     *            scrolling that are prepared
+     */
+    public void setAsyncBinding(Executor executor, int cacheSize, int prefetchDistance) {
+	if (mRowLoader != null) {
+	    mRowLoader.clear();
+	}
+	if (executor == null) {
+	    mRowLoader = null;
+	    return;
+	}
+	if (mHandler == null) {
+	    mHandler = new Handler(Looper.getMainLooper());
+	}
+	mPrefetchDistance = prefetchDistance;
+	mRowLoader = new AsyncRowLoader(executor, cacheSize, new AsyncRowLoader.Callback() {
+
+	    @Override
+	    public CharSequence[] prepareRow(TypedDataProvider data, int position, long id, int viewType) {
+		return GenericAdapter.this.prepareRow(data, position, id, viewType);
+	    }
+
+	    @Override
+	    public void onRowReady(long id) {
+		// the item may have moved since it was requested
+		int position = getPositionForId(id);
+		if (position >= 0) {
+		    onRowPrepared(position);
+		}
+	    }
+	});
+    }
+
+    /**
+     * Set a custom {@link RowFormatter} used to prepare the values for the
+     * rows when binding asynchronously
+     * 
+     * @param rowFormatter
+     */
+    public void setRowFormatter(RowFormatter rowFormatter) {
+	mRowFormatter = rowFormatter;
+	mContentGeneration++;
+	clearRowCache();
+    }
+
+    /**
+     * Drops the rows prepared when binding asynchronously. Must be called if
+     * the data for an item id changes
+     */
+    public void clearRowCache() {
+	if (mRowLoader != null) {
+	    mRowLoader.clear();
+	}
+    }
+
+    /**
+     * Binds the data at a position to the views in the row
+     * 
+     * @param row
+     *            the top level view for the row in the list
+     * @param holder
+     *            the holder for the rows views
+     * @param position
+     *            the position in the data set
+     */
+    private void bindView(View row, ViewHolder holder, int position) {
+
+	TypedDataProvider data = mTypedDataProvider;
+	if (data instanceof HashMapTypedDataProvider) {
+	    // the wrapped HashMap may have changed since it was last fetched
+	    ((HashMapTypedDataProvider) data).invalidate();
+	}
+
+	RowType rowType = mRowTypes.get(holder.mViewType);
+	for (int i = 0; i < holder.mViews.length; i++) {
+
+	    View v = holder.mViews[i];
+	    int column = rowType.mColumns[i];
+
+	    if (mTypedViewBinder != null && mTypedViewBinder.setViewValue(row, v, data, position, column)) {
+		continue;
+	    }
+
+	    int type = data.getColumnType(column);
+
+	    if (mViewBinder != null) {
+		// the ViewBinder can only take a String
+		String d;
+		if (type == TypedDataProvider.TYPE_INT) {
+		    d = String.valueOf(data.getInt(position, column));
+		} else if (type == TypedDataProvider.TYPE_LONG) {
+		    d = String.valueOf(data.getLong(position, column));
+		} else {
+		    CharSequence cs = data.getCharSequence(position, column);
+		    d = cs == null ? null : cs.toString();
+		}
+		if (mViewBinder.setViewValue(row, v, d, rowType.mFrom[i])) {
+		    continue;
+		}
+	    }
+
+	    if (v instanceof TextView) {
+
+		if (type == TypedDataProvider.TYPE_INT || type == TypedDataProvider.TYPE_LONG) {
+		    // format the number into the views own buffer so no String is
+		    // created
+		    long value = type == TypedDataProvider.TYPE_INT ? data.getInt(position, column) : data.getLong(
+			    position, column);
+		    char[] buffer = holder.getBuffer(i);
+		    int start = NumberFormatter.formatLong(value, buffer);
+		    ((TextView) v).setText(buffer, start, buffer.length - start);
+		} else {
+		    ((TextView) v).setText(data.getCharSequence(position, column));
+		}
+
+	    } else {
+		throw new IllegalStateException(v.getClass().getName() + " is not a "
+			+ " view that can be bounds by this Adapter");
+	    }
+
+	}
+    }
+
+    /**
+     * Creates the {@link ViewHolder} for a newly inflated row. The holder is
+     * stored as the rows tag so the views being bound to are only looked up
+     * once. Subclasses that add views to the row can override this to return
+     * a subclass of {@link ViewHolder}
+     * 
+     * @param row
+     *            the top level view for the row in the list
+     * @return the view holder for the row
+     */
+    protected ViewHolder createViewHolder(View row, int[] to) {
+	return new ViewHolder(row, to);
+    }
+
+    /**
+     * Gets the position in the data provider of the data shown at a position
+     * in the list. Subclasses that show the data in a different order to the
+     * data provider can override this
+     * 
+     * @param position
+     *            the position in the list
+     * @return the position in the data provider
+     */
+    protected int getDataPosition(int position) {
+	return position;
+    }
+
+    /**
+     * Gets the position in the list the data at a position in the data
+     * provider is shown at. The reverse of {@link #getDataPosition(int)}
+     * 
+     * @param dataPosition
+     *            the position in the data provider
+     * @return the position in the list
+     */
+    protected int getListPosition(int dataPosition) {
+	return dataPosition;
+    }
+
+    /**
+     * Gets the position of the data in the data provider with an id. The ids
+     * are indexed the first time this is called after the data changes, so
+     * later calls do not search the data. The ids should be unique
+     * 
+     * @param id
+     * @return the position in the data provider or -1 if no data has the id
+     */
+    protected int getDataPositionForId(long id) {
+	if (mDataProvider == null)
+	    return -1;
+	return mIdIndex.get(mDataProvider, id);
+    }
+
+    /**
+     * Gets the position in the list of the data with an id
+     * 
+     * @param id
+     * @return the position or {@link android.widget.AdapterView#INVALID_POSITION}
+     *         if no data has the id
+     */
+    public int getPositionForId(long id) {
+	int dataPosition = getDataPositionForId(id);
+	return dataPosition == -1 ? -1 : getListPosition(dataPosition);
+    }
+
+    /**
+     * Marks the index of ids out of date, must be called when the positions
+     * in the data provider change without
+     * {@link #notifyDataSetChanged()} being called
+     */
+    protected void invalidateIds() {
+	mIdIndex.invalidate();
+	mDataGeneration++;
+    }
+
+    /**
+     * All the rows are bound again
+     */
+    @Override
+    public void notifyDataSetChanged() {
+	mContentGeneration++;
+	mChangedIds.clear();
+	dispatchDataSetChanged();
+    }
+
+    /**
+     * Tells the list the data has changed without the rows that already show
+     * the content of their item being bound again
+     */
+    void dispatchDataSetChanged() {
+	invalidateIds();
+	onDataSetChanged();
+	super.notifyDataSetChanged();
+    }
+
+    /**
+     * Called when the data set has changed before the list is told.
+     * Subclasses that keep positions can update them here
+     */
+    protected void onDataSetChanged() {
     }
 
     /**
@@ -129,6 +710,16 @@ public class GenericAdapter extends BaseAdapter {
 	return view;
     }
 
+    /**
+     * Set a listener to measure the binding of the rows
+     * 
+     * @param listener
+     *            the {@link DragMetricsListener} or null to stop measuring
+     */
+    public void setMetricsListener(DragMetricsListener listener) {
+	mMetricsListener = listener;
+    }
+
     /**
      * Set a custom {@link ViewBinder}
      * 
@@ -136,6 +727,18 @@ public class GenericAdapter extends BaseAdapter {
      */
     public void setViewBinder(ViewBinder viewBinder) {
 	mViewBinder = viewBinder;
+	mContentGeneration++;
+    }
+
+    /**
+     * Set a custom {@link TypedViewBinder}. This is tried before any
+     * {@link ViewBinder}
+     * 
+     * @param typedViewBinder
+     */
+    public void setTypedViewBinder(TypedViewBinder typedViewBinder) {
+	mTypedViewBinder = typedViewBinder;
+	mContentGeneration++;
     }
 
     /**
@@ -146,10 +749,294 @@ public class GenericAdapter extends BaseAdapter {
      *            the new {@link GenericDataProvider}
      */
     public void reloadData(GenericDataProvider dataProvider) {
-	mDataProvider = dataProvider;
+	onReloadData();
+	mReloadGeneration++;
+	setDataProvider(dataProvider);
+	clearRowCache();
 	notifyDataSetChanged();
     }
 
+    /**
+     * Swaps the current {@link GenericDataProvider} with a new one, only
+     * binding again the rows whose content has changed. The ids and content
+     * of the old data are read on the main thread, then compared with the new
+     * data on a background thread: the ids with a Myers diff, then the
+     * content of the items in both. The old data provider is not read by the
+     * background thread. The data provider must be a
+     * {@link StableIdDataProvider} for rows to be skipped, otherwise this only
+     * moves the comparison off the main thread. Data that is loaded as it is
+     * read, a {@link PrefetchableDataProvider}, can not be compared without
+     * loading all of it so is reloaded in full. If the old data provider is
+     * moved before the diff is finished all the rows are bound again. A
+     * reload started after this one replaces it
+     * 
+     * @param dataProvider
+     *            the new {@link GenericDataProvider}. It must not change
+     *            until the diff has been applied
+     * @param executor
+     *            the executor the diff is run on
+     * @param comparator
+     *            gets the content of an item to compare in the old and new
+     *            data, null to compare the HashMaps from
+     *            {@link GenericDataProvider#getItem(int)}, which must not be
+     *            changed in place
+     */
+    public void reloadData(final GenericDataProvider dataProvider, Executor executor, final ContentComparator comparator) {
+	final GenericDataProvider oldDataProvider = mDataProvider;
+	if (oldDataProvider == null || oldDataProvider instanceof PrefetchableDataProvider
+		|| dataProvider instanceof PrefetchableDataProvider) {
+	    reloadData(dataProvider);
+	    return;
+	}
+
+	// the old data is read now as it can be moved on this thread
+	final long[] oldIds = getIds(oldDataProvider);
+	final Object[] oldContent = new Object[oldIds.length];
+	for (int i = 0; i < oldContent.length; i++) {
+	    oldContent[i] = getContent(oldDataProvider, i, comparator);
+	}
+	final int reloadGeneration = ++mReloadGeneration;
+	final int dataGeneration = mDataGeneration;
+	if (mHandler == null) {
+	    mHandler = new Handler(Looper.getMainLooper());
+	}
+
+	executor.execute(new Runnable() {
+
+	    @Override
+	    public void run() {
+		long[] newIds = getIds(dataProvider);
+		int[] newToOld = IdDiff.match(oldIds, newIds);
+		boolean moved = oldIds.length != newIds.length;
+		for (int i = 0; i < newToOld.length && !moved; i++) {
+		    moved = newToOld[i] != i;
+		}
+
+		final ArrayList<Long> changedIds = findChangedIds(oldIds, oldContent, dataProvider, newIds, newToOld,
+			comparator);
+		final boolean structureChanged = moved;
+		mHandler.post(new Runnable() {
+
+		    @Override
+		    public void run() {
+			if (reloadGeneration != mReloadGeneration)
+			    return;
+			onReloadData();
+			if (dataGeneration != mDataGeneration) {
+			    reloadData(dataProvider);
+			} else {
+			    applyDiff(dataProvider, changedIds, structureChanged);
+			}
+		    }
+		});
+	    }
+	});
+    }
+
+    /**
+     * Called before the data provider is swapped by a reload. Subclasses that
+     * have pending changes to the old data provider can apply them here
+     */
+    protected void onReloadData() {
+    }
+
+    private static long[] getIds(GenericDataProvider dataProvider) {
+	long[] ids = new long[dataProvider.getCount()];
+	for (int i = 0; i < ids.length; i++) {
+	    ids[i] = dataProvider.getItemId(i);
+	}
+	return ids;
+    }
+
+    private static Object getContent(GenericDataProvider dataProvider, int position, ContentComparator comparator) {
+	return comparator != null ? comparator.getContent(dataProvider, position) : dataProvider.getItem(position);
+    }
+
+    /**
+     * Finds the ids of the items that have been added, removed or whose
+     * content has changed. Items the diff did not match because they moved
+     * are paired by id
+     */
+    private static ArrayList<Long> findChangedIds(long[] oldIds, Object[] oldContent, GenericDataProvider newData,
+	    long[] newIds, int[] newToOld, ContentComparator comparator) {
+
+	ArrayList<Long> changed = new ArrayList<Long>();
+	boolean[] oldMatched = new boolean[oldIds.length];
+	HashMap<Long, Integer> unmatched = null;
+
+	for (int i = 0; i < newToOld.length; i++) {
+	    if (newToOld[i] != -1) {
+		oldMatched[newToOld[i]] = true;
+	    }
+	}
+	for (int i = 0; i < newToOld.length; i++) {
+	    int oldPosition = newToOld[i];
+	    if (oldPosition == -1) {
+		if (unmatched == null) {
+		    unmatched = new HashMap<Long, Integer>();
+		    for (int j = 0; j < oldIds.length; j++) {
+			if (!oldMatched[j]) {
+			    unmatched.put(oldIds[j], j);
+			}
+		    }
+		}
+		Integer moved = unmatched.remove(newIds[i]);
+		if (moved == null) {
+		    changed.add(newIds[i]);
+		    continue;
+		}
+		oldPosition = moved;
+		oldMatched[oldPosition] = true;
+	    }
+
+	    Object content = getContent(newData, i, comparator);
+	    boolean same = oldContent[oldPosition] == null ? content == null : oldContent[oldPosition].equals(content);
+	    if (!same) {
+		changed.add(newIds[i]);
+	    }
+	}
+	for (int j = 0; j < oldIds.length; j++) {
+	    if (!oldMatched[j]) {
+		changed.add(oldIds[j]);
+	    }
+	}
+	return changed;
+    }
+
+    /**
+     * Swaps to the new data provider and binds again the rows showing the
+     * changed ids
+     */
+    private void applyDiff(GenericDataProvider dataProvider, ArrayList<Long> changedIds, boolean structureChanged) {
+	setDataProvider(dataProvider);
+	if (!changedIds.isEmpty()) {
+	    mChangeNumber++;
+	}
+	for (int i = 0; i < changedIds.size(); i++) {
+	    long id = changedIds.get(i);
+	    mChangedIds.put(id, mChangeNumber);
+	    if (mRowLoader != null) {
+		mRowLoader.remove(id);
+	    }
+	}
+	// too many changed ids to remember, start a new generation so every row
+	// is bound again once and the ids can be forgotten
+	if (mChangedIds.size() > MAX_CHANGED_IDS) {
+	    mContentGeneration++;
+	    mChangedIds.clear();
+	}
+
+	if (!hasStableIds()) {
+	    notifyDataSetChanged();
+	} else if (structureChanged || !changedIds.isEmpty()) {
+	    dispatchDataSetChanged();
+	} else {
+	    invalidateIds();
+	}
+    }
+
+    /**
+     * 
+     * @param id
+     * @param boundChange
+     *            the change number when the row showing the item was bound
+     * @return true if the content of the item changed in a diffed reload
+     *         after the row was bound
+     */
+    private boolean isChangedSince(long id, int boundChange) {
+	if (mChangedIds.isEmpty())
+	    return false;
+	Integer changed = mChangedIds.get(id);
+	return changed != null && changed > boundChange;
+    }
+
+    /**
+     * Sets the data provider and resolves the column for each of the keys in
+     * the from array. A provider that is not a {@link TypedDataProvider} is
+     * wrapped in a {@link HashMapTypedDataProvider}
+     * 
+     * @param dataProvider
+     */
+    private void setDataProvider(GenericDataProvider dataProvider) {
+	mDataProvider = dataProvider;
+
+	if (dataProvider == null) {
+	    mTypedDataProvider = null;
+	    return;
+	}
+
+	if (dataProvider instanceof TypedDataProvider) {
+	    mTypedDataProvider = (TypedDataProvider) dataProvider;
+	} else {
+	    mTypedDataProvider = new HashMapTypedDataProvider(dataProvider);
+	}
+
+	for (int i = 0; i < mRowTypes.size(); i++) {
+	    mRowTypes.get(i).resolveColumns(mTypedDataProvider);
+	}
+    }
+
+    /**
+     * Holds the views in a row that the data is bound to so they do not have
+     * to be found each time the row is bound
+     */
+    public static class ViewHolder {
+
+	/** the views for each of the ids in the to array */
+	final View[] mViews;
+	/** buffers numbers are formatted into, created when first needed */
+	private final char[][] mBuffers;
+	/** the view type of the row */
+	int mViewType;
+	/** the id of the item the row was last bound to */
+	long mBoundId;
+	/** the content generation the row was bound in, -1 if not bound */
+	int mBoundGeneration = -1;
+	/** the change number of the latest diffed reload when the row was bound */
+	int mBoundChange;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param row
+	 *            the top level view for the row in the list
+	 * @param to
+	 *            ids in the layout the data will be bound to
+	 */
+	public ViewHolder(View row, int[] to) {
+	    mViews = new View[to.length];
+	    mBuffers = new char[to.length][];
+	    for (int i = 0; i < to.length; i++) {
+		mViews[i] = row.findViewById(to[i]);
+	    }
+	}
+
+	/**
+	 * 
+	 * @param index
+	 *            the index in the to array
+	 * @return the view the data at the given index is bound to
+	 */
+	public View getView(int index) {
+	    return mViews[index];
+	}
+
+	/**
+	 * 
+	 * @param index
+	 *            the index in the to array
+	 * @return the buffer numbers bound to the view at the given index are
+	 *         formatted into
+	 */
+	char[] getBuffer(int index) {
+	    if (mBuffers[index] == null) {
+		// long for 19 digits and a sign
+		mBuffers[index] = new char[20];
+	    }
+	    return mBuffers[index];
+	}
+    }
+
     /**
      * Interface used to allow custom binding of data to views in the lists row
      */
@@ -171,4 +1058,117 @@ public class GenericAdapter extends BaseAdapter {
 	boolean setViewValue(View parent, View view, String data, String from);
     }
 
+    /**
+     * Interface used to allow custom binding of data read by column from a
+     * {@link TypedDataProvider}, so values do not have to be converted to a
+     * String
+     */
+    public static interface TypedViewBinder {
+
+	/**
+	 * called to do the binding
+	 * 
+	 * @param parent
+	 *            the top level view for the row in the list
+	 * @param view
+	 *            the view to try to bind the data to
+	 * @param data
+	 *            the data provider to read the data from
+	 * @param position
+	 *            the position in the data set
+	 * @param column
+	 *            the column to read
+	 * @return whether the data has been bound to a view
+	 */
+	boolean setViewValue(View parent, View view, TypedDataProvider data, int position, int column);
+    }
+
+    /**
+     * The layout of a view type and the keys and views its rows are bound with
+     */
+    private static class RowType {
+
+	final int mViewResourceId;
+	final String[] mFrom;
+	final int[] mTo;
+	/** the column index in the data provider for each of the keys in mFrom */
+	final int[] mColumns;
+
+	RowType(int viewResourceId, String[] from, int[] to) {
+	    mViewResourceId = viewResourceId;
+	    mFrom = from;
+	    mTo = to;
+	    mColumns = new int[from.length];
+	}
+
+	void resolveColumns(TypedDataProvider data) {
+	    for (int i = 0; i < mFrom.length; i++) {
+		mColumns[i] = data.getColumnIndex(mFrom[i]);
+	    }
+	}
+    }
+
+    /**
+     * Interface used to pick the view type of each row when the list mixes
+     * layouts, see {@link GenericAdapter#addViewType(int, String[], int[])}
+     */
+    public static interface ViewTypeResolver {
+
+	/**
+	 * called to get the view type of a row
+	 * 
+	 * @param data
+	 *            the data provider
+	 * @param position
+	 *            the position in the data set
+	 * @return 0 for the constructor's layout or the index returned when
+	 *         the view type was added
+	 */
+	int getViewType(GenericDataProvider data, int position);
+    }
+
+    /**
+     * Interface used to get the content of an item to compare before and
+     * after a diffed reload. It is called on the main thread for the old data
+     * when the reload starts and on a background thread for the new data
+     */
+    public static interface ContentComparator {
+
+	/**
+	 * called to get the content of an item shown by its row. Items with
+	 * the same id whose content is equal are not bound again
+	 * 
+	 * @param data
+	 *            the data provider
+	 * @param position
+	 *            the position of the item
+	 * @return the content, compared with {@link Object#equals(Object)}. It
+	 *         must not change once returned
+	 */
+	public Object getContent(GenericDataProvider data, int position);
+    }
+
+    /**
+     * Interface used to allow custom formatting of the values for a row when
+     * binding asynchronously. It is called on the background thread so it can
+     * do expensive work such as building spans or formatting dates
+     */
+    public static interface RowFormatter {
+
+	/**
+	 * called to format a value
+	 * 
+	 * @param data
+	 *            the data provider to read the data from
+	 * @param position
+	 *            the position in the data set
+	 * @param column
+	 *            the column to read
+	 * @param from
+	 *            the key given to the data
+	 * @return the value to bind
+	 */
+	CharSequence formatValue(TypedDataProvider data, int position, int column, String from);
+    }
+
 }
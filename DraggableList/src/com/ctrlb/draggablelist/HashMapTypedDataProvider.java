@@ -0,0 +1,106 @@
+package com.ctrlb.draggablelist;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Wraps a {@link GenericDataProvider} so the data in its {@link HashMap}s can
+ * be read by column as a {@link TypedDataProvider}. Every column is
+ * {@link TypedDataProvider#TYPE_TEXT}. The last {@link HashMap} fetched is
+ * kept so that binding a row only calls
+ * {@link GenericDataProvider#getItem(int)} once. The cache is synchronized on
+ * this object so rows can be prepared on a background thread.
+ * 
+ * @author philip brown
+ * 
+ */
+public class HashMapTypedDataProvider implements TypedDataProvider {
+
+    private final GenericDataProvider mDataProvider;
+    private final ArrayList<String> mKeys = new ArrayList<String>();
+    private int mCachedPosition = -1;
+    private HashMap<String, String> mCachedItem;
+
+    /**
+     * Constructor
+     * 
+     * @param dataProvider
+     *            the {@link GenericDataProvider} to read the data from
+     */
+    public HashMapTypedDataProvider(GenericDataProvider dataProvider) {
+	mDataProvider = dataProvider;
+    }
+
+    /**
+     * 
+     * @return the {@link GenericDataProvider} being wrapped
+     */
+    public GenericDataProvider getDataProvider() {
+	return mDataProvider;
+    }
+
+    /**
+     * Forget the last {@link HashMap} fetched. Must be called when the data
+     * at a position may have changed
+     */
+    public synchronized void invalidate() {
+	mCachedPosition = -1;
+	mCachedItem = null;
+    }
+
+    @Override
+    public synchronized HashMap<String, String> getItem(int position) {
+	if (position != mCachedPosition) {
+	    mCachedItem = mDataProvider.getItem(position);
+	    mCachedPosition = position;
+	}
+	return mCachedItem;
+    }
+
+    @Override
+    public int getCount() {
+	return mDataProvider.getCount();
+    }
+
+    @Override
+    public long getItemId(int position) {
+	return mDataProvider.getItemId(position);
+    }
+
+    @Override
+    public int getColumnIndex(String key) {
+	int column = mKeys.indexOf(key);
+	if (column == -1) {
+	    mKeys.add(key);
+	    column = mKeys.size() - 1;
+	}
+	return column;
+    }
+
+    @Override
+    public int getColumnType(int column) {
+	return TYPE_TEXT;
+    }
+
+    @Override
+    public int getInt(int position, int column) {
+	String value = getString(position, column);
+	return value == null ? 0 : Integer.parseInt(value);
+    }
+
+    @Override
+    public long getLong(int position, int column) {
+	String value = getString(position, column);
+	return value == null ? 0 : Long.parseLong(value);
+    }
+
+    @Override
+    public CharSequence getCharSequence(int position, int column) {
+	return getString(position, column);
+    }
+
+    private String getString(int position, int column) {
+	return getItem(position).get(mKeys.get(column));
+    }
+
+}
@@ -0,0 +1,116 @@
+package com.ctrlb.draggablelist;
+
+/**
+ * A histogram of non negative values with buckets for each power of two, so
+ * recording a value does not allocate and the percentiles are within a
+ * factor of two.
+ * 
+ * @author philip brown
+ * 
+ */
+public class Histogram {
+
+    /** bucket i holds the values with i significant bits */
+    private final long[] mBuckets = new long[64];
+    private long mCount;
+    private long mSum;
+    private long mMin = Long.MAX_VALUE;
+    private long mMax;
+
+    /**
+     * Records a value, negative values are recorded as 0
+     * 
+     * @param value
+     */
+    public void record(long value) {
+	if (value < 0) {
+	    value = 0;
+	}
+	mBuckets[64 - Long.numberOfLeadingZeros(value)]++;
+	mCount++;
+	mSum += value;
+	if (value < mMin) {
+	    mMin = value;
+	}
+	if (value > mMax) {
+	    mMax = value;
+	}
+    }
+
+    /**
+     * 
+     * @return the number of values recorded
+     */
+    public long getCount() {
+	return mCount;
+    }
+
+    /**
+     * 
+     * @return the smallest value recorded or 0 if none have been
+     */
+    public long getMin() {
+	return mCount == 0 ? 0 : mMin;
+    }
+
+    /**
+     * 
+     * @return the largest value recorded
+     */
+    public long getMax() {
+	return mMax;
+    }
+
+    /**
+     * 
+     * @return the mean of the values recorded or 0 if none have been
+     */
+    public double getMean() {
+	return mCount == 0 ? 0 : (double) mSum / mCount;
+    }
+
+    /**
+     * Gets an upper bound for a percentile of the values recorded
+     * 
+     * @param percentile
+     *            between 0 and 100
+     * @return the value at or below which the percentile of the values fall,
+     *         at most twice the real value
+     */
+    public long getPercentile(double percentile) {
+	if (mCount == 0)
+	    return 0;
+
+	long rank = (long) Math.ceil(percentile / 100 * mCount);
+	long seen = 0;
+	for (int i = 0; i < mBuckets.length; i++) {
+	    seen += mBuckets[i];
+	    if (seen >= rank && seen > 0) {
+		// the largest value in the bucket
+		long upper = (1L << i) - 1;
+		return Math.min(upper, mMax);
+	    }
+	}
+	return mMax;
+    }
+
+    /**
+     * Forgets all the values recorded
+     */
+    public void reset() {
+	for (int i = 0; i < mBuckets.length; i++) {
+	    mBuckets[i] = 0;
+	}
+	mCount = 0;
+	mSum = 0;
+	mMin = Long.MAX_VALUE;
+	mMax = 0;
+    }
+
+    @Override
+    public String toString() {
+	return "count=" + mCount + " mean=" + (long) getMean() + " p50=" + getPercentile(50) + " p90="
+		+ getPercentile(90) + " p99=" + getPercentile(99) + " max=" + mMax;
+    }
+
+}
@@ -0,0 +1,45 @@
+package com.ctrlb.draggablelist;
+
+import android.widget.AdapterView;
+
+/**
+ * Finds the item under a point in a list, used by {@link DragController} to
+ * find the item a drag starts on and where it is being dragged to.
+ * 
+ * @author philip brown
+ * 
+ */
+interface HitTester {
+
+    /**
+     * Marks any cached positions of the items as out of date, should be
+     * called when the list is laid out
+     */
+    public void invalidate();
+
+    /**
+     * Finds the item under a point
+     * 
+     * @param x
+     *            the x coordinate in the list
+     * @param y
+     *            the y coordinate in the list
+     * @return the position in the adapter of the item under the point or
+     *         {@link AdapterView#INVALID_POSITION} if there is none
+     */
+    public int positionAt(int x, int y);
+
+    /**
+     * Finds the position an item being dragged to a point should be moved to
+     * 
+     * @param x
+     *            the x coordinate in the list
+     * @param y
+     *            the y coordinate in the list
+     * @param current
+     *            the position the item being dragged is at
+     * @return the position in the adapter or
+     *         {@link AdapterView#INVALID_POSITION} if there are no items
+     */
+    public int targetAt(int x, int y, int current);
+}
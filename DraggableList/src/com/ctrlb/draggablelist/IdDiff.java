@@ -0,0 +1,134 @@
+package com.ctrlb.draggablelist;
+
+import java.util.Arrays;
+
+/**
+ * Finds the longest common subsequence of two lists of item ids with the
+ * Myers diff algorithm, used by {@link GenericAdapter} to compare the data
+ * before and after a reload. The common start and end of the lists are
+ * matched first so a reload that changes a few items only diffs the part
+ * between them.
+ * 
+ * @author philip brown
+ * 
+ */
+final class IdDiff {
+
+    /**
+     * the most insertions and deletions searched for, past this only the
+     * common start and end are matched. Keeps the memory used by the search
+     * bounded
+     */
+    static final int MAX_EDITS = 512;
+
+    private IdDiff() {
+    }
+
+    /**
+     * 
+     * @param oldIds
+     *            the ids before the change
+     * @param newIds
+     *            the ids after the change
+     * @return for each position in newIds the position in oldIds it is
+     *         matched with or -1 if it is not part of the common subsequence
+     */
+    static int[] match(long[] oldIds, long[] newIds) {
+	int[] newToOld = new int[newIds.length];
+	Arrays.fill(newToOld, -1);
+
+	int start = 0;
+	while (start < oldIds.length && start < newIds.length && oldIds[start] == newIds[start]) {
+	    newToOld[start] = start;
+	    start++;
+	}
+
+	int oldEnd = oldIds.length;
+	int newEnd = newIds.length;
+	while (oldEnd > start && newEnd > start && oldIds[oldEnd - 1] == newIds[newEnd - 1]) {
+	    oldEnd--;
+	    newEnd--;
+	    newToOld[newEnd] = oldEnd;
+	}
+
+	if (oldEnd > start && newEnd > start) {
+	    myers(oldIds, start, oldEnd - start, newIds, start, newEnd - start, newToOld);
+	}
+	return newToOld;
+    }
+
+    /**
+     * Matches the common subsequence of a[aStart, aStart + n) and
+     * b[bStart, bStart + m). Gives up if there are more than
+     * {@link #MAX_EDITS} edits
+     */
+    private static void myers(long[] a, int aStart, int n, long[] b, int bStart, int m, int[] newToOld) {
+	int max = Math.min(n + m, MAX_EDITS);
+	int offset = max + 1;
+	int[] v = new int[2 * max + 3];
+	// the furthest x on each diagonal before each edit, for the way back
+	int[][] trace = new int[max + 1][];
+
+	for (int d = 0; d <= max; d++) {
+	    trace[d] = new int[2 * d + 1];
+	    System.arraycopy(v, offset - d, trace[d], 0, 2 * d + 1);
+
+	    for (int k = -d; k <= d; k += 2) {
+		int x;
+		if (k == -d || (k != d && v[offset + k - 1] < v[offset + k + 1])) {
+		    x = v[offset + k + 1];
+		} else {
+		    x = v[offset + k - 1] + 1;
+		}
+		int y = x - k;
+		while (x < n && y < m && a[aStart + x] == b[bStart + y]) {
+		    x++;
+		    y++;
+		}
+		v[offset + k] = x;
+
+		if (x >= n && y >= m) {
+		    backtrack(trace, d, n, m, aStart, bStart, newToOld);
+		    return;
+		}
+	    }
+	}
+    }
+
+    /**
+     * Follows the edits back from the end recording the matches on the way
+     */
+    private static void backtrack(int[][] trace, int edits, int n, int m, int aStart, int bStart, int[] newToOld) {
+	int x = n;
+	int y = m;
+
+	for (int d = edits; d > 0; d--) {
+	    // trace[d] holds diagonals -d to d before edit d was made
+	    int[] v = trace[d];
+	    int k = x - y;
+	    int prevK;
+	    if (k == -d || (k != d && v[k - 1 + d] < v[k + 1 + d])) {
+		prevK = k + 1;
+	    } else {
+		prevK = k - 1;
+	    }
+	    int prevX = v[prevK + d];
+	    int prevY = prevX - prevK;
+
+	    while (x > prevX && y > prevY) {
+		x--;
+		y--;
+		newToOld[bStart + y] = aStart + x;
+	    }
+	    x = prevX;
+	    y = prevY;
+	}
+
+	while (x > 0 && y > 0) {
+	    x--;
+	    y--;
+	    newToOld[bStart + y] = aStart + x;
+	}
+    }
+
+}
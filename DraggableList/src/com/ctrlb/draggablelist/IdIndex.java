@@ -0,0 +1,86 @@
+package com.ctrlb.draggablelist;
+
+import java.util.Arrays;
+
+/**
+ * Finds the position of an item in a {@link GenericDataProvider} by its id
+ * without a linear scan. The ids are kept in an open addressing hash table of
+ * primitive arrays, built the first time it is used after being invalidated.
+ * 
+ * @author philip brown
+ * 
+ */
+class IdIndex {
+
+    private long[] mIds = new long[0];
+    /** the position of each id plus one, 0 for an empty slot */
+    private int[] mPositions = new int[0];
+    private int mMask;
+    private boolean mValid;
+
+    /**
+     * Marks the index out of date, it is rebuilt when next used
+     */
+    void invalidate() {
+	mValid = false;
+    }
+
+    /**
+     * 
+     * @param dataProvider
+     *            the data provider the index is for
+     * @param id
+     * @return the position of the item with the id in the data provider or -1
+     *         if there is none
+     */
+    int get(GenericDataProvider dataProvider, long id) {
+	if (!mValid) {
+	    build(dataProvider);
+	}
+
+	int slot = hash(id) & mMask;
+	while (mPositions[slot] != 0) {
+	    if (mIds[slot] == id)
+		return mPositions[slot] - 1;
+	    slot = (slot + 1) & mMask;
+	}
+	return -1;
+    }
+
+    private void build(GenericDataProvider dataProvider) {
+	int count = dataProvider.getCount();
+
+	// keep the table at most half full
+	int capacity = 2;
+	while (capacity < count * 2) {
+	    capacity <<= 1;
+	}
+	if (mIds.length != capacity) {
+	    mIds = new long[capacity];
+	    mPositions = new int[capacity];
+	} else {
+	    Arrays.fill(mPositions, 0);
+	}
+	mMask = capacity - 1;
+
+	for (int position = 0; position < count; position++) {
+	    long id = dataProvider.getItemId(position);
+	    int slot = hash(id) & mMask;
+	    while (mPositions[slot] != 0 && mIds[slot] != id) {
+		slot = (slot + 1) & mMask;
+	    }
+	    // the first position is kept if an id is repeated
+	    if (mPositions[slot] == 0) {
+		mIds[slot] = id;
+		mPositions[slot] = position + 1;
+	    }
+	}
+	mValid = true;
+    }
+
+    private static int hash(long id) {
+	long h = id * 0x9E3779B97F4A7C15L;
+	return (int) (h ^ (h >>> 32));
+    }
+
+}
@@ -0,0 +1,164 @@
+package com.ctrlb.draggablelist;
+
+/**
+ * A bounded undo and redo history of moves. Each move is kept as the id of
+ * the item moved and the positions it was moved from and to, in arrays
+ * allocated once, so recording a move does not allocate. A drag of several
+ * items is kept as a run of moves that are undone and redone together. When
+ * the history is full the oldest drag is forgotten. Kept free of Android
+ * classes so it can be tested on the JVM.
+ * 
+ * @author philip brown
+ * 
+ */
+class MoveHistory {
+
+    /** the number of moves kept if none is given */
+    static final int DEFAULT_LIMIT = 100;
+
+    private long[] mIds;
+    private int[] mFrom;
+    private int[] mTo;
+    /** true if the move was made in the same drag as the one before it */
+    private boolean[] mJoined;
+    /** the index in the arrays of the oldest move */
+    private int mStart;
+    /** the number of moves kept, undone moves included */
+    private int mCount;
+    /** the number of moves that have not been undone */
+    private int mDone;
+
+    MoveHistory(int limit) {
+	setLimit(limit);
+    }
+
+    /**
+     * Sets the number of moves kept. The history is cleared
+     * 
+     * @param limit
+     */
+    void setLimit(int limit) {
+	if (limit < 0)
+	    throw new IllegalArgumentException("limit must not be negative");
+	mIds = new long[limit];
+	mFrom = new int[limit];
+	mTo = new int[limit];
+	mJoined = new boolean[limit];
+	clear();
+    }
+
+    /**
+     * Adds a move. The moves that have been undone can no longer be redone
+     * 
+     * @param id
+     *            the id of the item moved
+     * @param from
+     *            the position it was moved from
+     * @param to
+     *            the position it was moved to
+     */
+    void record(long id, int from, int to) {
+	record(id, from, to, false);
+    }
+
+    /**
+     * Adds a move. The moves that have been undone can no longer be redone
+     * 
+     * @param id
+     *            the id of the item moved
+     * @param from
+     *            the position it was moved from
+     * @param to
+     *            the position it was moved to
+     * @param joined
+     *            true if the move was made in the same drag as the last move
+     *            recorded, so they are undone and redone together
+     */
+    void record(long id, int from, int to, boolean joined) {
+	if (mIds.length == 0)
+	    return;
+	if (mDone == mIds.length) {
+	    // forget the oldest drag, with all of its moves
+	    do {
+		mStart = (mStart + 1) % mIds.length;
+		mDone--;
+	    } while (mDone > 0 && mJoined[mStart]);
+	}
+	mCount = mDone;
+	if (joined && mDone == 0) {
+	    // the start of the drag has been forgotten, it can not be undone
+	    return;
+	}
+	int index = (mStart + mDone) % mIds.length;
+	mIds[index] = id;
+	mFrom[index] = from;
+	mTo[index] = to;
+	mJoined[index] = joined;
+	mDone++;
+	mCount = mDone;
+    }
+
+    boolean canUndo() {
+	return mDone > 0;
+    }
+
+    boolean canRedo() {
+	return mDone < mCount;
+    }
+
+    /**
+     * Marks the last move as undone
+     * 
+     * @return the index of the move to pass to {@link #getId(int)},
+     *         {@link #getFrom(int)} and {@link #getTo(int)}
+     */
+    int undo() {
+	if (!canUndo())
+	    throw new IllegalStateException("Nothing to undo");
+	mDone--;
+	return (mStart + mDone) % mIds.length;
+    }
+
+    /**
+     * Marks the last move undone as done again
+     * 
+     * @return the index of the move to pass to {@link #getId(int)},
+     *         {@link #getFrom(int)} and {@link #getTo(int)}
+     */
+    int redo() {
+	if (!canRedo())
+	    throw new IllegalStateException("Nothing to redo");
+	int index = (mStart + mDone) % mIds.length;
+	mDone++;
+	return index;
+    }
+
+    /**
+     * 
+     * @return true if the next move to redo was made in the same drag as the
+     *         one before it. After {@link #undo()} the one before has to be
+     *         undone as well, after {@link #redo()} the next has to be redone
+     */
+    boolean isNextJoined() {
+	return mDone < mCount && mJoined[(mStart + mDone) % mIds.length];
+    }
+
+    long getId(int index) {
+	return mIds[index];
+    }
+
+    int getFrom(int index) {
+	return mFrom[index];
+    }
+
+    int getTo(int index) {
+	return mTo[index];
+    }
+
+    void clear() {
+	mStart = 0;
+	mCount = 0;
+	mDone = 0;
+    }
+
+}
@@ -0,0 +1,250 @@
+package com.ctrlb.draggablelist;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A log of moves kept in a memory mapped file. A move is written straight
+ * into the mapped memory, so it survives the process being killed without a
+ * system call on the thread that made it.
+ * <p>
+ * The moves are kept in a ring of fixed size records. Each move has a
+ * sequence number, written last so a move that is only partly written is
+ * ignored, and is stored in the record for its sequence number modulo the
+ * size of the ring. The header holds the sequence number of the last move
+ * written to the store, so the moves after it are found by following the
+ * sequence numbers. The methods are synchronized so moves can be appended on
+ * one thread and flushed on another.
+ * 
+ * @author philip brown
+ * 
+ */
+class MoveJournal {
+
+    private static final int MAGIC = 0x444c4a31;
+    private static final int CAPACITY_OFFSET = 4;
+    private static final int FLUSHED_OFFSET = 8;
+    private static final int HEADER_SIZE = 16;
+    /** sequence number, id, from and to */
+    private static final int RECORD_SIZE = 24;
+    /** the number of moves the file holds before it is grown */
+    static final int DEFAULT_CAPACITY = 1024;
+
+    private final FileChannel mChannel;
+    private MappedByteBuffer mBuffer;
+    private int mCapacity;
+    /** the sequence number the next move will be given */
+    private long mNextSequence;
+    /** the sequence number of the last move written to the store */
+    private long mFlushedSequence;
+    /**
+     * the sequence number of the last move being written to the store, moves
+     * up to this can not change
+     */
+    private long mFlushLimit;
+
+    /**
+     * Opens a journal, creating it if it does not exist
+     * 
+     * @param file
+     * @throws IOException
+     */
+    MoveJournal(File file) throws IOException {
+	mChannel = new RandomAccessFile(file, "rw").getChannel();
+
+	boolean exists = false;
+	if (mChannel.size() >= HEADER_SIZE) {
+	    mCapacity = (int) ((mChannel.size() - HEADER_SIZE) / RECORD_SIZE);
+	    map();
+	    exists = mBuffer.getInt(0) == MAGIC && mBuffer.getInt(CAPACITY_OFFSET) <= mCapacity;
+	}
+
+	if (exists) {
+	    mCapacity = mBuffer.getInt(CAPACITY_OFFSET);
+	    mFlushedSequence = mBuffer.getLong(FLUSHED_OFFSET);
+	} else {
+	    mCapacity = DEFAULT_CAPACITY;
+	    map();
+	    for (int i = 0; i < mCapacity; i++) {
+		mBuffer.putLong(HEADER_SIZE + i * RECORD_SIZE, 0);
+	    }
+	    mBuffer.putInt(CAPACITY_OFFSET, mCapacity);
+	    mBuffer.putLong(FLUSHED_OFFSET, 0);
+	    mBuffer.putInt(0, MAGIC);
+	}
+
+	// follow the moves not yet written to the store
+	mNextSequence = mFlushedSequence + 1;
+	while (mBuffer.getLong(offset(mNextSequence)) == mNextSequence) {
+	    mNextSequence++;
+	}
+	mFlushLimit = mFlushedSequence;
+    }
+
+    private void map() throws IOException {
+	mBuffer = mChannel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) mCapacity * RECORD_SIZE);
+    }
+
+    private int offset(long sequence) {
+	return HEADER_SIZE + (int) (sequence % mCapacity) * RECORD_SIZE;
+    }
+
+    /**
+     * Adds a move. If the last move that is not being flushed moved the same
+     * item to where this one moves it from, the two are combined into one
+     * 
+     * @param id
+     *            the id of the item moved
+     * @param from
+     *            the position it was moved from
+     * @param to
+     *            the position it was moved to
+     * @throws IOException
+     *             if the file could not be grown
+     */
+    synchronized void append(long id, int from, int to) throws IOException {
+	long last = mNextSequence - 1;
+	if (last > mFlushLimit) {
+	    int offset = offset(last);
+	    if (mBuffer.getLong(offset + 8) == id && mBuffer.getInt(offset + 20) == from) {
+		if (mBuffer.getInt(offset + 16) == to) {
+		    // moved back to where it started
+		    mBuffer.putLong(offset, 0);
+		    mNextSequence--;
+		} else {
+		    mBuffer.putInt(offset + 20, to);
+		}
+		return;
+	    }
+	}
+
+	if (mNextSequence - mFlushedSequence > mCapacity) {
+	    grow();
+	}
+
+	int offset = offset(mNextSequence);
+	mBuffer.putLong(offset + 8, id);
+	mBuffer.putInt(offset + 16, from);
+	mBuffer.putInt(offset + 20, to);
+	mBuffer.putLong(offset, mNextSequence);
+	mNextSequence++;
+    }
+
+    /**
+     * Doubles the size of the ring. The moves are copied to their new
+     * records before the new size is written to the header, so if the
+     * process is killed part way the old records are still used
+     */
+    private void grow() throws IOException {
+	int oldCapacity = mCapacity;
+	mCapacity *= 2;
+	map();
+	for (long sequence = mFlushedSequence + 1; sequence < mNextSequence; sequence++) {
+	    int from = HEADER_SIZE + (int) (sequence % oldCapacity) * RECORD_SIZE;
+	    int to = offset(sequence);
+	    if (from != to) {
+		mBuffer.putLong(to + 8, mBuffer.getLong(from + 8));
+		mBuffer.putLong(to + 16, mBuffer.getLong(from + 16));
+		mBuffer.putLong(to, sequence);
+	    }
+	}
+	mBuffer.putInt(CAPACITY_OFFSET, mCapacity);
+    }
+
+    /**
+     * Reads the moves not yet written to the store, as many as fit in the
+     * arrays
+     * 
+     * @param ids
+     *            filled with the ids of the moves
+     * @param from
+     * @param to
+     * @return the number of moves read
+     */
+    synchronized int readPending(long[] ids, int[] from, int[] to) {
+	int count = (int) Math.min(mNextSequence - 1 - mFlushedSequence, ids.length);
+	for (int i = 0; i < count; i++) {
+	    int offset = offset(mFlushedSequence + 1 + i);
+	    ids[i] = mBuffer.getLong(offset + 8);
+	    from[i] = mBuffer.getInt(offset + 16);
+	    to[i] = mBuffer.getInt(offset + 20);
+	}
+	return count;
+    }
+
+    /**
+     * Starts flushing the moves not yet written to the store. They can not be
+     * combined with new moves until {@link #endFlush(boolean)} is called
+     * 
+     * @return the sequence number of the last move to be flushed
+     */
+    synchronized long beginFlush() {
+	mFlushLimit = mNextSequence - 1;
+	return mFlushLimit;
+    }
+
+    /**
+     * Ends a flush started with {@link #beginFlush()}
+     * 
+     * @param written
+     *            true if the moves were written to the store
+     */
+    synchronized void endFlush(boolean written) {
+	if (written) {
+	    markFlushed(mFlushLimit);
+	    mBuffer.force();
+	} else {
+	    mFlushLimit = mFlushedSequence;
+	}
+    }
+
+    /**
+     * Marks the moves up to a sequence number as written to the store. If the
+     * store is ahead of every move in the journal, because the journal was
+     * lost or is new, the next move is numbered after the store's last one so
+     * it is not taken as written
+     * 
+     * @param sequence
+     *            the sequence number of the last move the store has
+     */
+    synchronized void markFlushed(long sequence) {
+	if (sequence >= mNextSequence) {
+	    mNextSequence = sequence + 1;
+	}
+	if (sequence > mFlushedSequence) {
+	    mFlushedSequence = sequence;
+	    mFlushLimit = Math.max(mFlushLimit, sequence);
+	    mBuffer.putLong(FLUSHED_OFFSET, sequence);
+	}
+    }
+
+    /**
+     * 
+     * @return the sequence number of the last move written to the store
+     */
+    synchronized long getFlushedSequence() {
+	return mFlushedSequence;
+    }
+
+    /**
+     * 
+     * @return the number of moves not yet written to the store
+     */
+    synchronized int getPendingCount() {
+	return (int) (mNextSequence - 1 - mFlushedSequence);
+    }
+
+    /**
+     * Closes the file, any moves not written to the store are kept
+     * 
+     * @throws IOException
+     */
+    synchronized void close() throws IOException {
+	mBuffer.force();
+	mChannel.close();
+    }
+
+}
@@ -0,0 +1,42 @@
+package com.ctrlb.draggablelist;
+
+/**
+ * Formats numbers into char buffers so binding a row creates no Strings. Used
+ * by {@link GenericAdapter}, and kept free of Android classes so it can be
+ * measured on the JVM.
+ * 
+ * @author philip brown
+ * 
+ */
+final class NumberFormatter {
+
+    private NumberFormatter() {
+    }
+
+    /**
+     * Writes the decimal digits of a value to the end of a buffer
+     * 
+     * @param value
+     *            the value
+     * @param buffer
+     *            a buffer of at least 20 chars
+     * @return the index in the buffer of the first char written
+     */
+    static int formatLong(long value, char[] buffer) {
+	int i = buffer.length;
+	boolean negative = value < 0;
+	if (!negative) {
+	    // work with negative values so Long.MIN_VALUE does not overflow
+	    value = -value;
+	}
+	do {
+	    buffer[--i] = (char) ('0' - (value % 10));
+	    value /= 10;
+	} while (value != 0);
+	if (negative) {
+	    buffer[--i] = '-';
+	}
+	return i;
+    }
+
+}
@@ -0,0 +1,210 @@
+package com.ctrlb.draggablelist;
+
+/**
+ * Creates keys used to keep the order of the items in a data set. The keys
+ * are strings that sort in the order of the items when compared with
+ * {@link String#compareTo(String)}, so a store can order the items by the
+ * key. A key can always be made between any two keys, so moving an item only
+ * changes the key of that item.
+ * <p>
+ * A key is read as the digits of a fraction between 0 and 1 in base 62
+ * using the characters 0-9, A-Z and a-z. Keys never end in '0' so there is
+ * always room for another key before them. Inserting many times at the same
+ * place makes the keys longer; {@link #needsRebalance(String, int)} and
+ * {@link #spread(int)} can be used to give all the items short keys again.
+ * 
+ * @author philip brown
+ * 
+ */
+public final class OrderKey {
+
+    /** the number of digits */
+    static final int BASE = 62;
+    /** the length a key can grow to before the keys should be rebalanced */
+    public static final int DEFAULT_MAX_LENGTH = 32;
+
+    private OrderKey() {
+    }
+
+    /**
+     * Creates a key that sorts between two keys
+     * 
+     * @param before
+     *            the key to sort after or null for no lower bound
+     * @param after
+     *            the key to sort before or null for no upper bound
+     * @return the new key
+     * @throws IllegalArgumentException
+     *             if before does not sort before after or a key is not valid
+     */
+    public static String between(String before, String after) {
+	if (before == null) {
+	    before = "";
+	}
+	validate(before);
+	if (after != null) {
+	    validate(after);
+	    if (after.length() == 0 || before.compareTo(after) >= 0)
+		throw new IllegalArgumentException(before + " does not sort before " + after);
+	}
+	if (after == null && before.length() > 0) {
+	    // moves to the end of the list are common so take the smallest step
+	    return increment(before);
+	}
+	if (before.length() == 0 && after != null) {
+	    // as are moves to the start
+	    return decrement(after);
+	}
+	StringBuilder key = new StringBuilder();
+	midpoint(before, after, key);
+	return key.toString();
+    }
+
+    /**
+     * Creates keys for a number of items in order, spread evenly so they are
+     * as short as possible
+     * 
+     * @param count
+     *            the number of items
+     * @return the keys
+     */
+    public static String[] spread(int count) {
+	String[] keys = new String[count];
+	if (count == 0)
+	    return keys;
+
+	// use the fewest digits that give every item a different key
+	int length = 1;
+	long size = BASE;
+	while (size <= count) {
+	    length++;
+	    size *= BASE;
+	}
+
+	long step = size / (count + 1);
+	char[] digits = new char[length];
+	for (int i = 0; i < count; i++) {
+	    long value = step * (i + 1);
+	    int end = length;
+	    for (int d = length - 1; d >= 0; d--) {
+		digits[d] = toChar((int) (value % BASE));
+		value /= BASE;
+	    }
+	    while (digits[end - 1] == '0') {
+		end--;
+	    }
+	    keys[i] = new String(digits, 0, end);
+	}
+	return keys;
+    }
+
+    /**
+     * 
+     * @param key
+     * @param maxLength
+     *            the longest a key should be
+     * @return true if the key is longer than maxLength and the keys should be
+     *         spread out again
+     */
+    public static boolean needsRebalance(String key, int maxLength) {
+	return key.length() > maxLength;
+    }
+
+    /**
+     * 
+     * @param key
+     * @return the shortest key after key found by adding one to a digit, so
+     *         keys added again and again at the end grow slowly
+     */
+    private static String increment(String key) {
+	for (int i = 0; i < key.length(); i++) {
+	    int digit = toDigit(key.charAt(i));
+	    if (digit < BASE - 1)
+		return key.substring(0, i) + toChar(digit + 1);
+	}
+	return key + toChar(1);
+    }
+
+    /**
+     * 
+     * @param key
+     * @return the shortest key before key found by taking one from a digit, so
+     *         keys added again and again at the start grow slowly
+     */
+    private static String decrement(String key) {
+	for (int i = 0; i < key.length(); i++) {
+	    int digit = toDigit(key.charAt(i));
+	    if (digit > 1)
+		return key.substring(0, i) + toChar(digit - 1);
+	    if (digit == 1 && i < key.length() - 1)
+		return key.substring(0, i + 1);
+	}
+	StringBuilder before = new StringBuilder();
+	midpoint("", key, before);
+	return before.toString();
+    }
+
+    /**
+     * Appends the digits of a key between a and b to key. a is less than b,
+     * a can be empty meaning 0 and b can be null meaning 1
+     */
+    private static void midpoint(String a, String b, StringBuilder key) {
+	if (b != null) {
+	    // copy the digits that are the same
+	    int n = 0;
+	    while (n < b.length() && digitAt(a, n) == toDigit(b.charAt(n))) {
+		n++;
+	    }
+	    if (n > 0) {
+		key.append(b, 0, n);
+		midpoint(a.length() > n ? a.substring(n) : "", b.substring(n), key);
+		return;
+	    }
+	}
+
+	int digitA = digitAt(a, 0);
+	int digitB = b == null ? BASE : toDigit(b.charAt(0));
+
+	if (digitB - digitA > 1) {
+	    // there is room for a digit in between
+	    key.append(toChar((digitA + digitB + 1) / 2));
+	} else if (b != null && b.length() > 1) {
+	    // the first digit of b on its own sorts before b
+	    key.append(b.charAt(0));
+	} else {
+	    key.append(toChar(digitA));
+	    midpoint(a.length() > 1 ? a.substring(1) : "", null, key);
+	}
+    }
+
+    private static int digitAt(String key, int index) {
+	return index < key.length() ? toDigit(key.charAt(index)) : 0;
+    }
+
+    private static void validate(String key) {
+	for (int i = 0; i < key.length(); i++) {
+	    toDigit(key.charAt(i));
+	}
+	if (key.length() > 0 && key.charAt(key.length() - 1) == '0')
+	    throw new IllegalArgumentException("Key can not end in 0: " + key);
+    }
+
+    static int toDigit(char c) {
+	if (c >= '0' && c <= '9')
+	    return c - '0';
+	if (c >= 'A' && c <= 'Z')
+	    return c - 'A' + 10;
+	if (c >= 'a' && c <= 'z')
+	    return c - 'a' + 36;
+	throw new IllegalArgumentException("Not a valid key character: " + c);
+    }
+
+    static char toChar(int digit) {
+	if (digit < 10)
+	    return (char) ('0' + digit);
+	if (digit < 36)
+	    return (char) ('A' + digit - 10);
+	return (char) ('a' + digit - 36);
+    }
+
+}
@@ -0,0 +1,202 @@
+package com.ctrlb.draggablelist;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+import android.os.Handler;
+import android.os.Looper;
+
+/**
+ * A {@link MoveableDataProvider} holding rows ordered by {@link OrderKey}s.
+ * Moving a row gives it a key between its new neighbours so only that row has
+ * to be written to the store with {@link #saveOrderKey(long, String)},
+ * however far it moves.
+ * <p>
+ * When a key grows longer than the maximum length all the rows are given new
+ * short keys on a background thread and written with
+ * {@link #saveOrderKeys(long[], String[])}. All the writes are run in order
+ * on the same executor, so a move made after a rebalance is written after
+ * it.
+ * <p>
+ * All the public methods must be called on the main thread.
+ * 
+ * @author philip brown
+ * 
+ */
+public abstract class OrderedDataProvider implements RangeMoveableDataProvider {
+
+    private final ArrayList<OrderedRow> mRows;
+    private final Executor mExecutor;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private int mMaxKeyLength = OrderKey.DEFAULT_MAX_LENGTH;
+    /** incremented each time the order changes */
+    private int mModCount;
+    private boolean mRebalancing;
+
+    /**
+     * Constructor using a single background thread to rebalance the keys
+     * 
+     * @param rows
+     *            the rows in order of their keys
+     */
+    public OrderedDataProvider(List<OrderedRow> rows) {
+	this(rows, Executors.newSingleThreadExecutor());
+    }
+
+    /**
+     * Constructor
+     * 
+     * @param rows
+     *            the rows in order of their keys
+     * @param executor
+     *            the executor the keys are rebalanced and written on. It must
+     *            run the tasks one at a time in the order they are given
+     */
+    public OrderedDataProvider(List<OrderedRow> rows, Executor executor) {
+	mRows = new ArrayList<OrderedRow>(rows);
+	mExecutor = executor;
+    }
+
+    /**
+     * Called on the background thread to write the new key of a row that has
+     * been moved
+     * 
+     * @param id
+     *            the id of the row
+     * @param orderKey
+     *            the new key
+     */
+    protected abstract void saveOrderKey(long id, String orderKey);
+
+    /**
+     * Called on the background thread to write new keys for all the rows when
+     * they are rebalanced. Should be done in a single transaction
+     * 
+     * @param ids
+     *            the ids of the rows
+     * @param orderKeys
+     *            the new keys
+     */
+    protected abstract void saveOrderKeys(long[] ids, String[] orderKeys);
+
+    /**
+     * Set the length a key can grow to before the keys are rebalanced
+     * 
+     * @param maxKeyLength
+     */
+    public void setMaxKeyLength(int maxKeyLength) {
+	mMaxKeyLength = maxKeyLength;
+    }
+
+    /**
+     * 
+     * @param position
+     * @return the row at the given position
+     */
+    public OrderedRow getRow(int position) {
+	return mRows.get(position);
+    }
+
+    @Override
+    public HashMap<String, String> getItem(int position) {
+	return mRows.get(position).data;
+    }
+
+    @Override
+    public int getCount() {
+	return mRows.size();
+    }
+
+    @Override
+    public long getItemId(int position) {
+	return mRows.get(position).id;
+    }
+
+    @Override
+    public void move(int from, int to) {
+	moveRange(from, to);
+    }
+
+    @Override
+    public void moveRange(int from, int to) {
+	if (from == to)
+	    return;
+
+	OrderedRow row = mRows.remove(from);
+	mRows.add(to, row);
+	mModCount++;
+
+	String before = to > 0 ? mRows.get(to - 1).orderKey : null;
+	String after = to < mRows.size() - 1 ? mRows.get(to + 1).orderKey : null;
+	final long id = row.id;
+	final String orderKey = OrderKey.between(before, after);
+	row.orderKey = orderKey;
+	mExecutor.execute(new Runnable() {
+
+	    @Override
+	    public void run() {
+		saveOrderKey(id, orderKey);
+	    }
+	});
+
+	if (OrderKey.needsRebalance(row.orderKey, mMaxKeyLength)) {
+	    rebalance();
+	}
+    }
+
+    /**
+     * Gives all the rows new short keys on the background thread. If the
+     * order changes before the new keys are written they are worked out again
+     */
+    public void rebalance() {
+	if (mRebalancing)
+	    return;
+	mRebalancing = true;
+
+	final int modCount = mModCount;
+	final long[] ids = new long[mRows.size()];
+	for (int i = 0; i < ids.length; i++) {
+	    ids[i] = mRows.get(i).id;
+	}
+
+	mExecutor.execute(new Runnable() {
+
+	    @Override
+	    public void run() {
+		final String[] keys = OrderKey.spread(ids.length);
+		mHandler.post(new Runnable() {
+
+		    @Override
+		    public void run() {
+			onRebalanced(modCount, ids, keys);
+		    }
+		});
+	    }
+	});
+    }
+
+    private void onRebalanced(int modCount, final long[] ids, final String[] keys) {
+	mRebalancing = false;
+	if (modCount != mModCount) {
+	    // moved while the keys were made, the keys no longer match the order
+	    rebalance();
+	    return;
+	}
+
+	for (int i = 0; i < keys.length; i++) {
+	    mRows.get(i).orderKey = keys[i];
+	}
+
+	mExecutor.execute(new Runnable() {
+
+	    @Override
+	    public void run() {
+		saveOrderKeys(ids, keys);
+	    }
+	});
+    }
+
+}
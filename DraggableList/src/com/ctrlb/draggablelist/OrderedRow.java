@@ -0,0 +1,36 @@
+package com.ctrlb.draggablelist;
+
+import java.util.HashMap;
+
+/**
+ * A row in a data set ordered by {@link OrderKey}s
+ * 
+ * @author philip brown
+ * 
+ */
+public class OrderedRow {
+
+    /** the id (primary key) of the row */
+    public final long id;
+    /** the key the rows are ordered by */
+    public String orderKey;
+    /** the data for the row */
+    public final HashMap<String, String> data;
+
+    /**
+     * Constructor
+     * 
+     * @param id
+     *            the id (primary key) of the row
+     * @param orderKey
+     *            the key the rows are ordered by
+     * @param data
+     *            the data for the row
+     */
+    public OrderedRow(long id, String orderKey, HashMap<String, String> data) {
+	this.id = id;
+	this.orderKey = orderKey;
+	this.data = data;
+    }
+
+}
@@ -0,0 +1,452 @@
+package com.ctrlb.draggablelist;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+import android.os.Handler;
+import android.os.Looper;
+
+/**
+ * A {@link MoveableDataProvider} for large data sets that are loaded a page at
+ * a time. Pages are loaded on a background {@link Executor} and the most
+ * recently used pages are kept in memory. While a page is loading a
+ * placeholder row is returned for its positions and the
+ * {@link OnDataLoadedListener} is told when it has loaded.
+ * <p>
+ * The order of the rows is kept as an {@link OrderKey} on each row. Moving a
+ * row gives it a key between the keys of its new neighbours so only the moved
+ * row has to be written. When keys grow too long all the rows are given new
+ * keys on the background thread. The loads and writes are run in order on
+ * the executor so a page loaded after a move sees the new order.
+ * <p>
+ * All the public methods must be called on the main thread.
+ * 
+ * @author philip brown
+ * 
+ */
+public abstract class PagedDataProvider implements RangeMoveableDataProvider, PrefetchableDataProvider {
+
+    /** the number of rows in a page if none is given */
+    public static final int DEFAULT_PAGE_SIZE = 50;
+    /** the number of pages kept in memory if none is given */
+    public static final int DEFAULT_MAX_PAGES = 20;
+
+    /**
+     * Interface used to tell the user when data has been loaded so the list
+     * can be redrawn
+     */
+    public static interface OnDataLoadedListener {
+
+	/**
+	 * called on the main thread when data has been loaded
+	 * 
+	 * @param position
+	 *            the first position loaded
+	 * @param count
+	 *            the number of positions loaded
+	 */
+	void onDataLoaded(int position, int count);
+    }
+
+    private final int mPageSize;
+    private final Executor mExecutor;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    /** the loaded pages by page index, in least recently used order */
+    private final LinkedHashMap<Integer, OrderedRow[]> mPages;
+    /** the pages being loaded */
+    private final HashMap<Integer, Integer> mLoading = new HashMap<Integer, Integer>();
+    /** the row returned while a page is loading */
+    private final HashMap<String, String> mPlaceholder = new HashMap<String, String>();
+    private OnDataLoadedListener mListener;
+    private int mCount;
+    /** the length a key can grow to before the keys are rebalanced */
+    private int mMaxKeyLength = OrderKey.DEFAULT_MAX_LENGTH;
+    /**
+     * incremented when pages are dropped by a move, pages that started loading
+     * before then may be out of date
+     */
+    private int mGeneration;
+
+    /**
+     * Constructor using {@link #DEFAULT_PAGE_SIZE}, {@link #DEFAULT_MAX_PAGES}
+     * and a single background thread
+     */
+    public PagedDataProvider() {
+	this(DEFAULT_PAGE_SIZE, DEFAULT_MAX_PAGES, Executors.newSingleThreadExecutor());
+    }
+
+    /**
+     * Constructor
+     * 
+     * @param pageSize
+     *            the number of rows in a page
+     * @param maxPages
+     *            the number of pages kept in memory
+     * @param executor
+     *            the executor the loads and writes are run on. It must run
+     *            the tasks one at a time in the order they are given
+     */
+    public PagedDataProvider(int pageSize, final int maxPages, Executor executor) {
+	mPageSize = pageSize;
+	mExecutor = executor;
+	mPages = new LinkedHashMap<Integer, OrderedRow[]>(maxPages + 1, 0.75f, true) {
+
+	    private static final long serialVersionUID = 1L;
+
+	    @Override
+	    protected boolean removeEldestEntry(Map.Entry<Integer, OrderedRow[]> eldest) {
+		return size() > maxPages;
+	    }
+	};
+    }
+
+    /**
+     * Called on the background thread to count the rows
+     * 
+     * @return the number of rows in the data store
+     */
+    protected abstract int loadCount();
+
+    /**
+     * Called on the background thread to load rows in order of their order
+     * key
+     * 
+     * @param offset
+     *            the position of the first row
+     * @param limit
+     *            the most rows to load
+     * @return the rows
+     */
+    protected abstract List<OrderedRow> loadRows(int offset, int limit);
+
+    /**
+     * Called on the background thread to write the new order key of a row
+     * that has been moved
+     * 
+     * @param id
+     *            the id of the row
+     * @param orderKey
+     *            the new order key
+     */
+    protected abstract void saveOrderKey(long id, String orderKey);
+
+    /**
+     * Called on the background thread to write new keys for all the rows
+     * when the keys are rebalanced. The default calls
+     * {@link #saveOrderKey(long, String)} for each row, it should be
+     * overridden to write them in a single transaction
+     * 
+     * @param ids
+     *            the ids of the rows
+     * @param orderKeys
+     *            the new keys
+     */
+    protected void saveOrderKeys(long[] ids, String[] orderKeys) {
+	for (int i = 0; i < ids.length; i++) {
+	    saveOrderKey(ids[i], orderKeys[i]);
+	}
+    }
+
+    /**
+     * Set the length a key can grow to before the keys are rebalanced
+     * 
+     * @param maxKeyLength
+     */
+    public void setMaxKeyLength(int maxKeyLength) {
+	mMaxKeyLength = maxKeyLength;
+    }
+
+    /**
+     * Set the listener told when data has been loaded
+     * 
+     * @param listener
+     */
+    public void setOnDataLoadedListener(OnDataLoadedListener listener) {
+	mListener = listener;
+    }
+
+    /**
+     * Drops the loaded pages and counts the rows again. The listener is told
+     * when the count has loaded
+     */
+    public void refresh() {
+	final int generation = ++mGeneration;
+	mPages.clear();
+	mLoading.clear();
+
+	mExecutor.execute(new Runnable() {
+
+	    @Override
+	    public void run() {
+		final int count = loadCount();
+		mHandler.post(new Runnable() {
+
+		    @Override
+		    public void run() {
+			if (generation != mGeneration)
+			    return;
+			mCount = count;
+			if (mListener != null) {
+			    mListener.onDataLoaded(0, count);
+			}
+		    }
+		});
+	    }
+	});
+    }
+
+    /**
+     * Starts loading the pages holding the positions given if they are not
+     * loaded or loading
+     * 
+     * @param from
+     *            the first position
+     * @param to
+     *            the last position
+     */
+    public void loadRange(int from, int to) {
+	from = Math.max(from, 0);
+	to = Math.min(to, mCount - 1);
+	if (to < from)
+	    return;
+	for (int page = from / mPageSize; page <= to / mPageSize; page++) {
+	    loadPage(page);
+	}
+    }
+
+    /**
+     * 
+     * @param position
+     * @return true if the row at the position is in memory
+     */
+    public boolean isLoaded(int position) {
+	return getRow(position) != null;
+    }
+
+    /**
+     * The row returned for a position while its page is loading. The default
+     * is an empty row
+     * 
+     * @param position
+     * @return the placeholder data
+     */
+    protected HashMap<String, String> getPlaceholder(int position) {
+	return mPlaceholder;
+    }
+
+    @Override
+    public HashMap<String, String> getItem(int position) {
+	OrderedRow row = getRow(position);
+	if (row == null) {
+	    loadPage(position / mPageSize);
+	    return getPlaceholder(position);
+	}
+	return row.data;
+    }
+
+    @Override
+    public int getCount() {
+	return mCount;
+    }
+
+    /**
+     * @return the id of the row, or a negative id unique to the position
+     *         while the row is loading
+     */
+    @Override
+    public long getItemId(int position) {
+	OrderedRow row = getRow(position);
+	if (row == null) {
+	    loadPage(position / mPageSize);
+	    return -1 - position;
+	}
+	return row.id;
+    }
+
+    @Override
+    public void move(int from, int to) {
+	moveRange(from, to);
+    }
+
+    @Override
+    public void moveRange(final int from, final int to) {
+	if (from == to)
+	    return;
+
+	moveLoadedRows(from, to);
+
+	mExecutor.execute(new Runnable() {
+
+	    @Override
+	    public void run() {
+		saveMove(from, to);
+	    }
+	});
+    }
+
+    /**
+     * Called on the background thread to give the moved row an order key
+     * between its new neighbours. The rows in the data store are still in the
+     * order before the move
+     * 
+     * @param from
+     * @param to
+     */
+    private void saveMove(int from, int to) {
+	List<OrderedRow> moved = loadRows(from, 1);
+	if (moved.isEmpty())
+	    return;
+
+	// the neighbours after the move, found by their positions before it
+	OrderedRow before = null;
+	OrderedRow after = null;
+	if (from < to) {
+	    List<OrderedRow> rows = loadRows(to, 2);
+	    before = rows.size() > 0 ? rows.get(0) : null;
+	    after = rows.size() > 1 ? rows.get(1) : null;
+	} else if (to == 0) {
+	    List<OrderedRow> rows = loadRows(0, 1);
+	    after = rows.size() > 0 ? rows.get(0) : null;
+	} else {
+	    List<OrderedRow> rows = loadRows(to - 1, 2);
+	    before = rows.size() > 0 ? rows.get(0) : null;
+	    after = rows.size() > 1 ? rows.get(1) : null;
+	}
+
+	String orderKey = OrderKey.between(before == null ? null : before.orderKey, after == null ? null
+		: after.orderKey);
+	saveOrderKey(moved.get(0).id, orderKey);
+
+	if (OrderKey.needsRebalance(orderKey, mMaxKeyLength)) {
+	    rebalance();
+	}
+    }
+
+    /**
+     * Called on the background thread to give all the rows new short keys.
+     * The ids are all read, a page at a time, before any key is written, as
+     * the new keys sort among the old ones and would change the pages still
+     * to be read. The order of the rows does not change so the pages in
+     * memory are still correct
+     */
+    void rebalance() {
+	int count = loadCount();
+	long[] ids = new long[count];
+	int loaded = 0;
+	while (loaded < count) {
+	    List<OrderedRow> rows = loadRows(loaded, Math.min(mPageSize, count - loaded));
+	    if (rows.isEmpty())
+		break;
+	    for (int i = 0; i < rows.size() && loaded < count; i++) {
+		ids[loaded++] = rows.get(i).id;
+	    }
+	}
+	if (loaded < count) {
+	    // rows removed since they were counted
+	    long[] found = new long[loaded];
+	    System.arraycopy(ids, 0, found, 0, loaded);
+	    ids = found;
+	}
+	saveOrderKeys(ids, OrderKey.spread(ids.length));
+    }
+
+    /**
+     * Moves the rows in memory. If any of the pages between the positions are
+     * not loaded the pages are dropped to be loaded again after the move has
+     * been written
+     * 
+     * @param from
+     * @param to
+     */
+    private void moveLoadedRows(int from, int to) {
+	int firstPage = Math.min(from, to) / mPageSize;
+	int lastPage = Math.max(from, to) / mPageSize;
+
+	OrderedRow[][] pages = new OrderedRow[lastPage - firstPage + 1][];
+	boolean allLoaded = true;
+	for (int page = firstPage; page <= lastPage; page++) {
+	    pages[page - firstPage] = mPages.get(page);
+	    allLoaded &= pages[page - firstPage] != null && !mLoading.containsKey(page);
+	}
+
+	if (!allLoaded) {
+	    mGeneration++;
+	    for (int page = firstPage; page <= lastPage; page++) {
+		mPages.remove(page);
+		mLoading.remove(page);
+	    }
+	    return;
+	}
+
+	int offset = firstPage * mPageSize;
+	int step = from < to ? 1 : -1;
+	OrderedRow moved = pages[(from - offset) / mPageSize][(from - offset) % mPageSize];
+	for (int position = from; position != to; position += step) {
+	    int next = position + step - offset;
+	    pages[(position - offset) / mPageSize][(position - offset) % mPageSize] = pages[next / mPageSize][next
+		    % mPageSize];
+	}
+	pages[(to - offset) / mPageSize][(to - offset) % mPageSize] = moved;
+    }
+
+    private OrderedRow getRow(int position) {
+	OrderedRow[] page = mPages.get(position / mPageSize);
+	if (page == null)
+	    return null;
+	return page[position % mPageSize];
+    }
+
+    /**
+     * Starts loading a page on the background thread if it is not loaded or
+     * loading
+     * 
+     * @param page
+     *            the index of the page
+     */
+    private void loadPage(final int page) {
+	if (mLoading.containsKey(page) || mPages.containsKey(page))
+	    return;
+
+	final int generation = mGeneration;
+	mLoading.put(page, generation);
+
+	mExecutor.execute(new Runnable() {
+
+	    @Override
+	    public void run() {
+		final List<OrderedRow> rows = loadRows(page * mPageSize, mPageSize);
+		mHandler.post(new Runnable() {
+
+		    @Override
+		    public void run() {
+			onPageLoaded(page, generation, rows);
+		    }
+		});
+	    }
+	});
+    }
+
+    private void onPageLoaded(int page, int generation, List<OrderedRow> rows) {
+	Integer loading = mLoading.get(page);
+	if (loading == null || loading != generation) {
+	    // dropped or out of date, it will be loaded again when needed
+	    return;
+	}
+	mLoading.remove(page);
+
+	OrderedRow[] rowArray = new OrderedRow[mPageSize];
+	for (int i = 0; i < rows.size() && i < mPageSize; i++) {
+	    rowArray[i] = rows.get(i);
+	}
+	mPages.put(page, rowArray);
+
+	if (mListener != null) {
+	    mListener.onDataLoaded(page * mPageSize, rows.size());
+	}
+    }
+
+}
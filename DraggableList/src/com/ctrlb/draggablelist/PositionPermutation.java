@@ -0,0 +1,76 @@
+package com.ctrlb.draggablelist;
+
+/**
+ * Maps the positions shown in the list to positions in the data provider
+ * while items are reordered without changing the data provider. The array
+ * is reused between drags so resetting it does not allocate unless the data
+ * set has grown.
+ * 
+ * @author philip brown
+ * 
+ */
+public class PositionPermutation {
+
+    /** the position in the data provider for each position shown */
+    private int[] mPositions = new int[0];
+    private int mCount;
+
+    /**
+     * Resets to the identity permutation
+     * 
+     * @param count
+     *            the number of items in the data set
+     */
+    public void reset(int count) {
+	if (mPositions.length < count) {
+	    mPositions = new int[count];
+	}
+	for (int i = 0; i < count; i++) {
+	    mPositions[i] = i;
+	}
+	mCount = count;
+    }
+
+    /**
+     * 
+     * @return the number of items in the data set
+     */
+    public int size() {
+	return mCount;
+    }
+
+    /**
+     * 
+     * @param position
+     *            the position shown in the list
+     * @return the position in the data provider for the given position.
+     *         Positions outside the permutation are returned unchanged
+     */
+    public int get(int position) {
+	if (position < 0 || position >= mCount)
+	    return position;
+	return mPositions[position];
+    }
+
+    /**
+     * Moves the item shown at from to to, shifting the items in between by
+     * one position towards from
+     * 
+     * @param from
+     *            the position the item is shown at
+     * @param to
+     *            the position the item will be shown at
+     */
+    public void move(int from, int to) {
+	if (from == to)
+	    return;
+	int moved = mPositions[from];
+	if (from < to) {
+	    System.arraycopy(mPositions, from + 1, mPositions, from, to - from);
+	} else {
+	    System.arraycopy(mPositions, to, mPositions, to + 1, from - to);
+	}
+	mPositions[to] = moved;
+    }
+
+}
@@ -0,0 +1,34 @@
+package com.ctrlb.draggablelist;
+
+/**
+ * Interface used to allow the data to be loaded before it is shown. When the
+ * data provider implements this, {@link DraggableListView} asks it to load
+ * the positions ahead of the direction the list is scrolling and
+ * {@link GenericAdapter} counts how many rows were loaded when they were
+ * bound.
+ * 
+ * @author philip brown
+ * 
+ */
+
+public interface PrefetchableDataProvider extends GenericDataProvider {
+
+    /**
+     * Starts loading the data between two positions in the background if it
+     * is not loaded or loading. Must not block
+     * 
+     * @param from
+     *            the first position
+     * @param to
+     *            the last position
+     */
+    public void loadRange(int from, int to);
+
+    /**
+     * 
+     * @param position
+     * @return true if the data at the given position is loaded
+     */
+    public boolean isLoaded(int position);
+
+}
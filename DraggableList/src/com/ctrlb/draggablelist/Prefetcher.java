@@ -0,0 +1,168 @@
+package com.ctrlb.draggablelist;
+
+import android.os.SystemClock;
+
+/**
+ * Asks a {@link GenericAdapter} to load the rows ahead of the direction a list
+ * is scrolling. The number of rows loaded grows with the speed of the scroll
+ * so a fling does not outrun the data. Only the rows that have not recently
+ * been asked for are requested. Just the rows around the latest request are
+ * remembered, as rows further away may have been dropped from the caches
+ * since.
+ * 
+ * @author philip brown
+ * 
+ */
+class Prefetcher {
+
+    /** how far ahead in time the rows are loaded at the current speed */
+    private static final int LOOK_AHEAD_MS = 300;
+
+    private GenericAdapter mAdapter;
+    /** the minimum number of rows loaded ahead of the visible rows */
+    private int mDistance;
+    /** the first visible position the last time the list scrolled */
+    private int mFirst = -1;
+    /** the time the list last scrolled */
+    private long mTime;
+    /** the smoothed speed of the scroll in rows per second */
+    private float mVelocity;
+    /**
+     * the positions that have been requested recently, no more than the
+     * furthest distance loaded ahead
+     */
+    private int mRequestedFrom;
+    private int mRequestedTo = -1;
+    /** the number of rows when they were requested */
+    private int mCount;
+
+    Prefetcher(int distance) {
+	mDistance = distance;
+    }
+
+    void setAdapter(GenericAdapter adapter) {
+	mAdapter = adapter;
+	reset();
+    }
+
+    void setDistance(int distance) {
+	mDistance = distance;
+	reset();
+    }
+
+    int getDistance() {
+	return mDistance;
+    }
+
+    /**
+     * Forgets the positions requested, called when the data changes
+     */
+    void reset() {
+	mFirst = -1;
+	mVelocity = 0;
+	mRequestedFrom = 0;
+	mRequestedTo = -1;
+    }
+
+    /**
+     * Called when the list scrolls
+     * 
+     * @param first
+     *            the first visible position in the adapter
+     * @param visible
+     *            the number of visible rows
+     */
+    void onScroll(int first, int visible) {
+	if (mAdapter == null || mDistance <= 0)
+	    return;
+
+	long now = SystemClock.uptimeMillis();
+	if (mFirst != -1 && first != mFirst) {
+	    long dt = Math.max(now - mTime, 1);
+	    float velocity = (first - mFirst) * 1000f / dt;
+	    mVelocity = 0.6f * velocity + 0.4f * mVelocity;
+	}
+	if (first != mFirst) {
+	    mFirst = first;
+	    mTime = now;
+	}
+
+	if (mVelocity > 0) {
+	    prefetch(first + visible, 1);
+	} else if (mVelocity < 0) {
+	    prefetch(first - 1, -1);
+	}
+    }
+
+    /**
+     * Called while auto scrolling during a drag, the rows past the edge the
+     * item is dragged towards are loaded before the list reaches them
+     * 
+     * @param first
+     *            the first visible position in the adapter
+     * @param visible
+     *            the number of visible rows
+     * @param dy
+     *            the distance scrolled, negative towards the top
+     */
+    void onAutoScroll(int first, int visible, int dy) {
+	if (mAdapter == null || mDistance <= 0 || dy == 0)
+	    return;
+
+	if (dy > 0) {
+	    prefetch(first + visible, 1);
+	} else {
+	    prefetch(first - 1, -1);
+	}
+    }
+
+    /**
+     * Requests the rows from a position in a direction that have not already
+     * been requested
+     * 
+     * @param start
+     *            the first position past the visible rows
+     * @param step
+     *            1 to load below, -1 to load above
+     */
+    private void prefetch(int start, int step) {
+	int maxDistance = mDistance * 4;
+	int distance = Math.max(mDistance, (int) (Math.abs(mVelocity) * LOOK_AHEAD_MS / 1000));
+	distance = Math.min(distance, maxDistance);
+
+	// the data has changed, request the rows again
+	int count = mAdapter.getCount();
+	if (count != mCount) {
+	    mCount = count;
+	    mRequestedFrom = 0;
+	    mRequestedTo = -1;
+	}
+
+	int from = step > 0 ? start : start - distance + 1;
+	int to = step > 0 ? start + distance - 1 : start;
+	from = Math.max(from, 0);
+	to = Math.min(to, count - 1);
+	if (to < from)
+	    return;
+
+	// only request the part past the rows already requested
+	if (from >= mRequestedFrom && to <= mRequestedTo)
+	    return;
+	if (step > 0 && from >= mRequestedFrom && from <= mRequestedTo + 1) {
+	    mAdapter.prefetch(mRequestedTo + 1, to);
+	    mRequestedTo = to;
+	    // forget the rows left behind, they are asked for again if the list
+	    // scrolls back to them
+	    mRequestedFrom = Math.max(mRequestedFrom, to - maxDistance + 1);
+	} else if (step < 0 && to >= mRequestedFrom - 1 && to <= mRequestedTo) {
+	    mAdapter.prefetch(from, mRequestedFrom - 1);
+	    mRequestedFrom = from;
+	    mRequestedTo = Math.min(mRequestedTo, from + maxDistance - 1);
+	} else {
+	    mAdapter.prefetch(from, to);
+	    mRequestedFrom = from;
+	    mRequestedTo = to;
+	}
+    }
+
+}
@@ -0,0 +1,143 @@
+package com.ctrlb.draggablelist;
+
+/**
+ * Moves items in a {@link MoveableDataProvider} using the fewest calls the
+ * provider supports. Used by {@link DraggableGenericAdapter} when a drag is
+ * committed, and kept free of Android classes so it can be tested on the JVM.
+ * 
+ * @author philip brown
+ * 
+ */
+final class ProviderMoves {
+
+    private ProviderMoves() {
+    }
+
+    /**
+     * Moves an item, with a single call if the data provider is a
+     * {@link RangeMoveableDataProvider}. Otherwise the item is moved one
+     * position at a time
+     * 
+     * @param dataProvider
+     * @param from
+     *            the position the item is moved from
+     * @param to
+     *            the position the item ends up at
+     * @return the number of calls made to the data provider
+     */
+    static int move(MoveableDataProvider dataProvider, int from, int to) {
+	if (dataProvider instanceof RangeMoveableDataProvider) {
+	    ((RangeMoveableDataProvider) dataProvider).moveRange(from, to);
+	    return 1;
+	}
+
+	int calls = Math.abs(to - from);
+	if (from > to) {
+	    // move down
+
+	    while (from > to) {
+		dataProvider.move(from, from - 1);
+		from--;
+	    }
+
+	} else {
+	    while (from < to) {
+		dataProvider.move(from, from + 1);
+		from++;
+	    }
+	}
+	return calls;
+    }
+
+    /**
+     * Moves the items at the given positions so they are next to each other
+     * starting at the target, with a single call if the data provider is a
+     * {@link BatchMoveableDataProvider}. Otherwise each item is moved in turn,
+     * the ones moving down from the last and the ones moving up from the
+     * first so the items in between keep their order
+     * 
+     * @param dataProvider
+     * @param positions
+     *            the positions of the items in ascending order
+     * @param target
+     *            the position the first item ends up at
+     * @return the number of calls made to the data provider
+     */
+    static int moveBatch(MoveableDataProvider dataProvider, int[] positions, int target) {
+	if (dataProvider instanceof BatchMoveableDataProvider) {
+	    ((BatchMoveableDataProvider) dataProvider).moveBatch(positions, target);
+	    return 1;
+	}
+
+	int[] from = new int[positions.length];
+	int[] to = new int[positions.length];
+	int moves = splitBatch(positions, target, null, from, to);
+	int calls = 0;
+	for (int i = 0; i < moves; i++) {
+	    calls += move(dataProvider, from[i], to[i]);
+	}
+	return calls;
+    }
+
+    /**
+     * Splits moving a batch into single moves, the ones moving down from the
+     * last and the ones moving up from the first so the items in between keep
+     * their order. Items already in place are not moved
+     * 
+     * @param positions
+     *            the positions of the items in ascending order
+     * @param target
+     *            the position the first item ends up at
+     * @param items
+     *            filled with the index in the positions of the item each
+     *            move is for, or null
+     * @param from
+     *            filled with the position each move is from
+     * @param to
+     *            filled with the position each move is to
+     * @return the number of moves
+     */
+    static int splitBatch(int[] positions, int target, int[] items, int[] from, int[] to) {
+	int moves = 0;
+	// where each item is as the others are moved
+	int[] current = positions.clone();
+	for (int i = positions.length - 1; i >= 0; i--) {
+	    if (current[i] < target + i) {
+		if (items != null) {
+		    items[moves] = i;
+		}
+		from[moves] = current[i];
+		to[moves++] = target + i;
+		moveOne(current, i, target + i);
+	    }
+	}
+	for (int i = 0; i < positions.length; i++) {
+	    if (current[i] > target + i) {
+		if (items != null) {
+		    items[moves] = i;
+		}
+		from[moves] = current[i];
+		to[moves++] = target + i;
+		moveOne(current, i, target + i);
+	    }
+	}
+	return moves;
+    }
+
+    /**
+     * Moves one item of a batch and updates where the other items now are
+     */
+    private static void moveOne(int[] current, int index, int to) {
+	int from = current[index];
+	for (int i = 0; i < current.length; i++) {
+	    if (i == index) {
+		current[i] = to;
+	    } else if (from < to && current[i] > from && current[i] <= to) {
+		current[i]--;
+	    } else if (from > to && current[i] >= to && current[i] < from) {
+		current[i]++;
+	    }
+	}
+    }
+
+}
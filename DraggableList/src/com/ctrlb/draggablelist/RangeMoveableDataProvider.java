@@ -0,0 +1,29 @@
+package com.ctrlb.draggablelist;
+
+/**
+ * Interface used to allow the data to be moved any distance in the underlying
+ * data set with a single call. When the data provider implements this
+ * {@link DraggableGenericAdapter} calls {@link #moveRange(int, int)} once for
+ * each drag, otherwise it falls back to calling
+ * {@link MoveableDataProvider#move(int, int)} for each step between the
+ * positions.
+ * 
+ * @author philip brown
+ * 
+ */
+
+public interface RangeMoveableDataProvider extends MoveableDataProvider {
+
+    /**
+     * This method will be invoked to move the data. The data at from is
+     * removed and inserted at to, the data in between is shifted by one
+     * position towards from.
+     * 
+     * @param from
+     *            position in the data set the data is moved from
+     * @param to
+     *            position in the data set the data is moved to
+     */
+    public void moveRange(int from, int to);
+
+}
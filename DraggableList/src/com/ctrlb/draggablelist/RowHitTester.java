@@ -0,0 +1,152 @@
+package com.ctrlb.draggablelist;
+
+import android.view.View;
+import android.widget.AdapterView;
+import android.widget.ListView;
+
+/**
+ * Finds the row under a y coordinate in a {@link ListView} by binary search
+ * over a cached copy of the top and bottom edges of the visible rows. The
+ * cache is refreshed after the list is laid out or scrolled. Header and
+ * footer rows are accounted for so the positions returned are positions in
+ * the adapter passed to the list, and a point on a divider belongs to the
+ * row above it. Only the y coordinate is used.
+ * 
+ * @author philip brown
+ * 
+ */
+class RowHitTester implements HitTester {
+
+    private final ListView mListView;
+    /** the top edge of each visible row */
+    private int[] mTops = new int[0];
+    /** the bottom edge of each visible row */
+    private int[] mBottoms = new int[0];
+    /** the number of visible rows in the cache */
+    private int mChildCount;
+    /** the list position of the first visible row in the cache */
+    private int mFirstPosition;
+    /** the top of the first visible row in the cache, changes on scroll */
+    private int mFirstTop;
+    private boolean mValid;
+
+    RowHitTester(ListView listView) {
+	mListView = listView;
+    }
+
+    @Override
+    public void invalidate() {
+	mValid = false;
+    }
+
+    /**
+     * @return the position in the adapter of the row under the point or
+     *         {@link AdapterView#INVALID_POSITION} if there is no row, or the
+     *         row is a header or footer
+     */
+    @Override
+    public int positionAt(int x, int y) {
+	refresh();
+
+	int index = indexAt(y);
+	if (index == -1 || y < mTops[index] || y >= mBottoms[index] + mListView.getDividerHeight())
+	    return AdapterView.INVALID_POSITION;
+
+	int position = mFirstPosition + index - mListView.getHeaderViewsCount();
+	if (position < 0 || position >= getAdapterCount())
+	    return AdapterView.INVALID_POSITION;
+	return position;
+    }
+
+    /**
+     * The item only swaps with a neighbouring row once the point has crossed
+     * the middle of that row. Points above or below the rows or over headers
+     * and footers give the first or last position
+     */
+    @Override
+    public int targetAt(int x, int y, int current) {
+	refresh();
+
+	int count = getAdapterCount();
+	int index = indexAt(y);
+	if (index == -1) {
+	    if (mChildCount == 0 || count == 0)
+		return AdapterView.INVALID_POSITION;
+	    // above the first row
+	    index = 0;
+	}
+
+	int position = mFirstPosition + index - mListView.getHeaderViewsCount();
+	if (position < 0)
+	    return 0;
+	if (position >= count)
+	    return count - 1;
+
+	if (current != AdapterView.INVALID_POSITION) {
+	    int middle = (mTops[index] + mBottoms[index]) / 2;
+	    if (position > current && y < middle) {
+		// not yet past the middle of the row below
+		position--;
+	    } else if (position < current && y > middle) {
+		// not yet past the middle of the row above
+		position++;
+	    }
+	}
+	return position;
+    }
+
+    /**
+     * 
+     * @param y
+     * @return the index of the last visible row whose top is at or above y,
+     *         -1 if y is above all the rows
+     */
+    private int indexAt(int y) {
+	int low = 0;
+	int high = mChildCount - 1;
+	int index = -1;
+	while (low <= high) {
+	    int mid = (low + high) >>> 1;
+	    if (mTops[mid] <= y) {
+		index = mid;
+		low = mid + 1;
+	    } else {
+		high = mid - 1;
+	    }
+	}
+	return index;
+    }
+
+    private int getAdapterCount() {
+	return mListView.getCount() - mListView.getHeaderViewsCount() - mListView.getFooterViewsCount();
+    }
+
+    /**
+     * Copies the edges of the visible rows if the list has been laid out or
+     * scrolled since they were last copied
+     */
+    private void refresh() {
+	int childCount = mListView.getChildCount();
+	int firstPosition = mListView.getFirstVisiblePosition();
+	int firstTop = childCount == 0 ? 0 : mListView.getChildAt(0).getTop();
+
+	if (mValid && childCount == mChildCount && firstPosition == mFirstPosition && firstTop == mFirstTop)
+	    return;
+
+	if (mTops.length < childCount) {
+	    mTops = new int[childCount];
+	    mBottoms = new int[childCount];
+	}
+	for (int i = 0; i < childCount; i++) {
+	    View child = mListView.getChildAt(i);
+	    mTops[i] = child.getTop();
+	    mBottoms[i] = child.getBottom();
+	}
+
+	mChildCount = childCount;
+	mFirstPosition = firstPosition;
+	mFirstTop = firstTop;
+	mValid = true;
+    }
+
+}
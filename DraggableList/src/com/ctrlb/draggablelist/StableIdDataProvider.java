@@ -0,0 +1,18 @@
+package com.ctrlb.draggablelist;
+
+/**
+ * Interface used to show that the ids returned by
+ * {@link GenericDataProvider#getItemId(int)} are unique and stay with the
+ * data when it is moved or reloaded. When the data provider implements this
+ * {@link GenericAdapter#hasStableIds()} returns true, so the list can keep the
+ * state of its rows across data set changes, and
+ * {@link DraggableGenericAdapter} follows the item being dragged by its id if
+ * the data changes during a drag.
+ * 
+ * @author philip brown
+ * 
+ */
+
+public interface StableIdDataProvider extends GenericDataProvider {
+
+}
@@ -0,0 +1,67 @@
+package com.ctrlb.draggablelist;
+
+/**
+ * Interface used to allow the data to be returned by column without creating
+ * a {@link java.util.HashMap} or a String for each value. The columns are
+ * resolved to an index once by {@link GenericAdapter} and the values are then
+ * read with the typed getters when each row is bound.
+ * <p>
+ * {@link #getItem(int)} is still required but is only used when
+ * {@link GenericAdapter#getItem(int)} is called, not when binding rows.
+ * 
+ * @author philip brown
+ * 
+ */
+
+public interface TypedDataProvider extends GenericDataProvider {
+
+    /** the column holds text, read with {@link #getCharSequence(int, int)} */
+    public static final int TYPE_TEXT = 0;
+    /** the column holds an int, read with {@link #getInt(int, int)} */
+    public static final int TYPE_INT = 1;
+    /** the column holds a long, read with {@link #getLong(int, int)} */
+    public static final int TYPE_LONG = 2;
+
+    /**
+     * 
+     * @param key
+     *            the key used for the data in the from array of the adapter
+     * @return the index of the column for the key or -1 if there is no column
+     *         for the key
+     */
+    public int getColumnIndex(String key);
+
+    /**
+     * 
+     * @param column
+     *            the index of the column
+     * @return the type of the data in the column, one of {@link #TYPE_TEXT},
+     *         {@link #TYPE_INT} or {@link #TYPE_LONG}
+     */
+    public int getColumnType(int column);
+
+    /**
+     * 
+     * @param position
+     * @param column
+     * @return the value in the column as an int at the given position
+     */
+    public int getInt(int position, int column);
+
+    /**
+     * 
+     * @param position
+     * @param column
+     * @return the value in the column as a long at the given position
+     */
+    public long getLong(int position, int column);
+
+    /**
+     * 
+     * @param position
+     * @param column
+     * @return the value in the column as text at the given position
+     */
+    public CharSequence getCharSequence(int position, int column);
+
+}
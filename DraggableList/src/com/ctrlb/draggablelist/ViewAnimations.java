@@ -0,0 +1,94 @@
+package com.ctrlb.draggablelist;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.view.View;
+
+/**
+ * Animates the translation of views. The methods use APIs added in API level
+ * 12 so the class is only loaded when they are called, callers must check
+ * the API level first.
+ * 
+ * @author philip brown
+ * 
+ */
+@TargetApi(Build.VERSION_CODES.HONEYCOMB_MR1)
+final class ViewAnimations {
+
+    private ViewAnimations() {
+    }
+
+    /**
+     * 
+     * @return true if the device supports the methods of this class
+     */
+    static boolean isSupported() {
+	return Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB_MR1;
+    }
+
+    /**
+     * Slides a view from an offset back to where it is laid out
+     * 
+     * @param view
+     * @param dx
+     *            the horizontal offset it starts at
+     * @param dy
+     *            the vertical offset it starts at
+     * @param duration
+     *            the time in milliseconds
+     */
+    static void slide(View view, float dx, float dy, long duration) {
+	view.setTranslationX(dx);
+	view.setTranslationY(dy);
+	view.animate().translationX(0).translationY(0).setDuration(duration);
+    }
+
+    /**
+     * Moves a view vertically from where it is drawn to an offset from where
+     * it is laid out
+     * 
+     * @param view
+     * @param dy
+     *            the offset
+     * @param duration
+     *            the time in milliseconds, 0 to move it straight away
+     */
+    static void translateY(View view, float dy, long duration) {
+	if (duration > 0) {
+	    view.animate().translationY(dy).setDuration(duration);
+	} else {
+	    view.animate().cancel();
+	    view.setTranslationY(dy);
+	}
+    }
+
+    /**
+     * 
+     * @param view
+     * @return how far the view is drawn right of where it is laid out
+     */
+    static float getTranslationX(View view) {
+	return view.getTranslationX();
+    }
+
+    /**
+     * 
+     * @param view
+     * @return how far the view is drawn below where it is laid out
+     */
+    static float getTranslationY(View view) {
+	return view.getTranslationY();
+    }
+
+    /**
+     * Stops any animation and draws the view where it is laid out
+     * 
+     * @param view
+     */
+    static void reset(View view) {
+	view.animate().cancel();
+	view.setTranslationX(0);
+	view.setTranslationY(0);
+    }
+
+}
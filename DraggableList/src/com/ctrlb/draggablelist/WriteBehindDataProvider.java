@@ -0,0 +1,407 @@
+package com.ctrlb.draggablelist;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import android.util.Log;
+
+/**
+ * A {@link RangeMoveableDataProvider} that moves the items of another provider
+ * straight away and writes the moves to the data store later on a background
+ * thread. Each move is first recorded in a journal file, so moves that had not
+ * been written when the process was killed are written the next time.
+ * <p>
+ * A move of the item that was moved last is combined with that move, so
+ * dragging an item around before it is written gives one move. The moves are
+ * written in batches by {@link #writeMoves(long[], int[], int[], int, long)},
+ * which should write them and the sequence number of the last one in a single
+ * transaction. {@link #replay()} must be called once the wrapped provider has
+ * loaded the data from the store, before any moves are made.
+ * <p>
+ * The moves are recorded by item id, so the wrapped provider must be a
+ * {@link StableIdDataProvider}. Use {@link Typed} to wrap a
+ * {@link TypedDataProvider} so its columns are still read directly.
+ * <p>
+ * All the public methods must be called on the main thread.
+ * 
+ * @author philip brown
+ * 
+ */
+public abstract class WriteBehindDataProvider implements RangeMoveableDataProvider, StableIdDataProvider {
+
+    private static final String TAG = "talkinginterval";
+    /** the time to wait after a move before writing if none is given */
+    public static final long DEFAULT_FLUSH_DELAY_MS = 500;
+    /** the longest time to wait before trying again after a failed write */
+    private static final long MAX_RETRY_DELAY_MS = 60000;
+
+    private final MoveableDataProvider mDataProvider;
+    private final MoveJournal mJournal;
+    private final ScheduledExecutorService mExecutor;
+    private final boolean mOwnExecutor;
+    private final long mFlushDelay;
+    private ScheduledFuture<?> mPendingFlush;
+    /** the delay before trying again, doubled after each failed write */
+    private long mRetryDelay;
+
+    private final Runnable mFlushRunnable = new Runnable() {
+
+	@Override
+	public void run() {
+	    flushJournal();
+	}
+    };
+
+    /**
+     * Constructor using {@link #DEFAULT_FLUSH_DELAY_MS} and a single
+     * background thread
+     * 
+     * @param dataProvider
+     *            the provider the moves are made on
+     * @param journal
+     *            the file the moves are recorded in, created if it does not
+     *            exist
+     * @throws IOException
+     *             if the journal could not be opened
+     */
+    public WriteBehindDataProvider(MoveableDataProvider dataProvider, File journal) throws IOException {
+	this(dataProvider, journal, null, DEFAULT_FLUSH_DELAY_MS);
+    }
+
+    /**
+     * Constructor
+     * 
+     * @param dataProvider
+     *            the provider the moves are made on, with stable ids
+     * @param journal
+     *            the file the moves are recorded in, created if it does not
+     *            exist
+     * @param executor
+     *            the executor the moves are written on, or null for a single
+     *            background thread. It must run the tasks one at a time
+     * @param flushDelay
+     *            the time in milliseconds to wait after a move before writing
+     * @throws IOException
+     *             if the journal could not be opened
+     * @throws IllegalArgumentException
+     *             if the provider is not a {@link StableIdDataProvider}
+     */
+    public WriteBehindDataProvider(MoveableDataProvider dataProvider, File journal,
+	    ScheduledExecutorService executor, long flushDelay) throws IOException {
+	if (!(dataProvider instanceof StableIdDataProvider))
+	    throw new IllegalArgumentException("the moves are recorded by id so the ids must be stable");
+	mDataProvider = dataProvider;
+	mJournal = new MoveJournal(journal);
+	mOwnExecutor = executor == null;
+	mExecutor = mOwnExecutor ? Executors.newSingleThreadScheduledExecutor() : executor;
+	mFlushDelay = flushDelay;
+	mRetryDelay = flushDelay;
+    }
+
+    /**
+     * Called by {@link #replay()} to find the last move the data store has
+     * 
+     * @return the sequence number last given to
+     *         {@link #writeMoves(long[], int[], int[], int, long)}, or 0 if
+     *         none
+     */
+    protected abstract long getLastSequence();
+
+    /**
+     * Called on the background thread to write a batch of moves to the data
+     * store, in order. The moves and the sequence number should be written in
+     * a single transaction
+     * 
+     * @param ids
+     *            the ids of the items moved
+     * @param from
+     *            the positions they were moved from
+     * @param to
+     *            the positions they were moved to
+     * @param count
+     *            the number of moves
+     * @param lastSequence
+     *            the sequence number of the last move, returned by
+     *            {@link #getLastSequence()} once written
+     * @throws IOException
+     *             if the moves could not be written, they are tried again
+     *             later
+     */
+    protected abstract void writeMoves(long[] ids, int[] from, int[] to, int count, long lastSequence)
+	    throws IOException;
+
+    /**
+     * Called when the journal or the data store could not be written. Logs
+     * the error, override to report it another way. Called on the main thread
+     * when a move could not be recorded and on the background thread
+     * otherwise
+     * 
+     * @param message
+     *            what could not be done
+     * @param e
+     *            the error
+     */
+    protected void onError(String message, IOException e) {
+	Log.e(TAG, message, e);
+    }
+
+    /**
+     * Makes the moves the data store does not have on the wrapped provider
+     * and starts writing them. Called once the wrapped provider has loaded
+     * the data from the store
+     * 
+     * @return the number of moves made
+     */
+    public int replay() {
+	mJournal.markFlushed(getLastSequence());
+
+	int pending = mJournal.getPendingCount();
+	long[] ids = new long[pending];
+	int[] from = new int[pending];
+	int[] to = new int[pending];
+	int count = mJournal.readPending(ids, from, to);
+
+	int replayed = 0;
+	for (int i = 0; i < count; i++) {
+	    int position = findItem(ids[i], from[i]);
+	    if (position < 0) {
+		// removed from the store since the move was made
+		continue;
+	    }
+	    int target = Math.min(Math.max(to[i], 0), mDataProvider.getCount() - 1);
+	    ProviderMoves.move(mDataProvider, position, target);
+	    replayed++;
+	}
+
+	if (count > 0) {
+	    schedule(0);
+	}
+	return replayed;
+    }
+
+    /**
+     * 
+     * @param id
+     * @param position
+     *            where the item is expected to be
+     * @return the position of the item with the id, or -1 if there is none
+     */
+    private int findItem(long id, int position) {
+	int count = mDataProvider.getCount();
+	if (position >= 0 && position < count && mDataProvider.getItemId(position) == id)
+	    return position;
+	for (int i = 0; i < count; i++) {
+	    if (mDataProvider.getItemId(i) == id)
+		return i;
+	}
+	return -1;
+    }
+
+    @Override
+    public HashMap<String, String> getItem(int position) {
+	return mDataProvider.getItem(position);
+    }
+
+    @Override
+    public int getCount() {
+	return mDataProvider.getCount();
+    }
+
+    @Override
+    public long getItemId(int position) {
+	return mDataProvider.getItemId(position);
+    }
+
+    @Override
+    public void move(int from, int to) {
+	moveRange(from, to);
+    }
+
+    @Override
+    public void moveRange(int from, int to) {
+	if (from == to)
+	    return;
+
+	long id = mDataProvider.getItemId(from);
+	ProviderMoves.move(mDataProvider, from, to);
+	try {
+	    mJournal.append(id, from, to);
+	} catch (IOException e) {
+	    // the item stays where it was dropped, but the move is not written to
+	    // the data store
+	    onError("could not record move of " + id + " from " + from + " to " + to, e);
+	    return;
+	}
+	schedule(mFlushDelay);
+    }
+
+    /**
+     * 
+     * @return the number of moves not yet written to the data store
+     */
+    public int getPendingCount() {
+	return mJournal.getPendingCount();
+    }
+
+    /**
+     * Starts writing the moves without waiting for the flush delay
+     */
+    public void flush() {
+	schedule(0);
+    }
+
+    /**
+     * Writes the moves and closes the journal. Moves that could not be
+     * written are kept in the journal for the next time
+     */
+    public void close() {
+	synchronized (this) {
+	    if (mPendingFlush != null) {
+		mPendingFlush.cancel(false);
+	    }
+	}
+	mExecutor.execute(new Runnable() {
+
+	    @Override
+	    public void run() {
+		flushJournal();
+		try {
+		    mJournal.close();
+		} catch (IOException e) {
+		    onError("could not close move journal", e);
+		}
+	    }
+	});
+	if (mOwnExecutor) {
+	    mExecutor.shutdown();
+	}
+    }
+
+    /**
+     * Starts a flush after the delay, replacing one that has not started
+     */
+    private synchronized void schedule(long delay) {
+	if (mPendingFlush != null) {
+	    mPendingFlush.cancel(false);
+	}
+	mPendingFlush = mExecutor.schedule(mFlushRunnable, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Called on the background thread to write the moves in the journal. If
+     * the write fails it is tried again after a delay that doubles each time
+     */
+    private void flushJournal() {
+	long flushed = mJournal.getFlushedSequence();
+	long last = mJournal.beginFlush();
+	int count = (int) (last - flushed);
+	if (count == 0) {
+	    mJournal.endFlush(false);
+	    return;
+	}
+
+	long[] ids = new long[count];
+	int[] from = new int[count];
+	int[] to = new int[count];
+	mJournal.readPending(ids, from, to);
+
+	try {
+	    writeMoves(ids, from, to, count, last);
+	} catch (IOException e) {
+	    onError("could not write moves, trying again in " + mRetryDelay + "ms", e);
+	    mJournal.endFlush(false);
+	    if (!mExecutor.isShutdown()) {
+		schedule(mRetryDelay);
+	    }
+	    mRetryDelay = Math.min(Math.max(mRetryDelay * 2, 1), MAX_RETRY_DELAY_MS);
+	    return;
+	}
+
+	mJournal.endFlush(true);
+	mRetryDelay = mFlushDelay;
+	if (mJournal.getPendingCount() > 0) {
+	    schedule(mFlushDelay);
+	}
+    }
+
+    /**
+     * A {@link WriteBehindDataProvider} for a {@link TypedDataProvider}, the
+     * columns are read from the wrapped provider
+     * 
+     * @author philip brown
+     * 
+     */
+    public static abstract class Typed extends WriteBehindDataProvider implements TypedDataProvider {
+
+	private final TypedDataProvider mTypedDataProvider;
+
+	/**
+	 * Constructor using {@link #DEFAULT_FLUSH_DELAY_MS} and a single
+	 * background thread
+	 * 
+	 * @param dataProvider
+	 *            the provider the moves are made on, with stable ids
+	 * @param journal
+	 *            the file the moves are recorded in
+	 * @throws IOException
+	 *             if the journal could not be opened
+	 */
+	public <T extends MoveableDataProvider & TypedDataProvider> Typed(T dataProvider, File journal)
+		throws IOException {
+	    this(dataProvider, journal, null, DEFAULT_FLUSH_DELAY_MS);
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param dataProvider
+	 *            the provider the moves are made on, with stable ids
+	 * @param journal
+	 *            the file the moves are recorded in
+	 * @param executor
+	 *            the executor the moves are written on, or null for a
+	 *            single background thread
+	 * @param flushDelay
+	 *            the time in milliseconds to wait after a move before
+	 *            writing
+	 * @throws IOException
+	 *             if the journal could not be opened
+	 */
+	public <T extends MoveableDataProvider & TypedDataProvider> Typed(T dataProvider, File journal,
+		ScheduledExecutorService executor, long flushDelay) throws IOException {
+	    super(dataProvider, journal, executor, flushDelay);
+	    mTypedDataProvider = dataProvider;
+	}
+
+	@Override
+	public int getColumnIndex(String key) {
+	    return mTypedDataProvider.getColumnIndex(key);
+	}
+
+	@Override
+	public int getColumnType(int column) {
+	    return mTypedDataProvider.getColumnType(column);
+	}
+
+	@Override
+	public int getInt(int position, int column) {
+	    return mTypedDataProvider.getInt(position, column);
+	}
+
+	@Override
+	public long getLong(int position, int column) {
+	    return mTypedDataProvider.getLong(position, column);
+	}
+
+	@Override
+	public CharSequence getCharSequence(int position, int column) {
+	    return mTypedDataProvider.getCharSequence(position, column);
+	}
+    }
+
+}
@@ -5,9 +5,11 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import com.ctrlb.draggablelistdemo.R;
+import com.ctrlb.draggablelist.BatchMoveableDataProvider;
 import com.ctrlb.draggablelist.DraggableGenericAdapter;
 import com.ctrlb.draggablelist.DraggableListView;
-import com.ctrlb.draggablelist.MoveableDataProvider;
+import com.ctrlb.draggablelist.RangeMoveableDataProvider;
+import com.ctrlb.draggablelist.StableIdDataProvider;
 import android.os.Bundle;
 import android.app.Activity;
 import android.graphics.Color;
@@ -52,14 +54,16 @@ public class MainActivity extends Activity {
     }
 
     // some random test data
-    class data implements MoveableDataProvider {
+    class data implements RangeMoveableDataProvider, BatchMoveableDataProvider, StableIdDataProvider {
 
 	public final static String ITEM_1 = "item1";
 	public final static String ITEM_2 = "item2";
 	private ArrayList<HashMap<String, String>> mArrayList;
+	private ArrayList<Long> mIds;
 
 	public data() {
 	    mArrayList = new ArrayList<HashMap<String, String>>();
+	    mIds = new ArrayList<Long>();
 	    for (int i = 0; i < 30; i++) {
 		HashMap<String, String> hm = new HashMap<String, String>();
 
@@ -67,6 +71,7 @@ public class MainActivity extends Activity {
 		hm.put(ITEM_2, "Item number " + i);
 
 		mArrayList.add(hm);
+		mIds.add((long) i);
 	    }
 	}
 
@@ -82,12 +87,29 @@ public class MainActivity extends Activity {
 
 	@Override
 	public long getItemId(int position) {
-	    return 0;
+	    return mIds.get(position);
 	}
 	
 	
 	public void move(int from, int to) {
 	    Collections.swap(mArrayList, from, to);
+	    Collections.swap(mIds, from, to);
+	}
+
+	public void moveRange(int from, int to) {
+	    mArrayList.add(to, mArrayList.remove(from));
+	    mIds.add(to, mIds.remove(from));
+	}
+
+	public void moveBatch(int[] from, int to) {
+	    ArrayList<HashMap<String, String>> items = new ArrayList<HashMap<String, String>>();
+	    ArrayList<Long> ids = new ArrayList<Long>();
+	    for (int i = from.length - 1; i >= 0; i--) {
+		items.add(0, mArrayList.remove(from[i]));
+		ids.add(0, mIds.remove(from[i]));
+	    }
+	    mArrayList.addAll(to, items);
+	    mIds.addAll(to, ids);
 	}
 
     }
@@ -0,0 +1,86 @@
+package com.ctrlb.draggablelist;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.TreeSet;
+
+import android.test.AndroidTestCase;
+
+/**
+ * Checks drags through a {@link DraggableGenericAdapter} leave the data in the
+ * order they were dropped in. Creates the adapter with a context so it runs on
+ * a device
+ */
+public class DraggableGenericAdapterTest extends AndroidTestCase {
+
+    private static final int COUNT = 60;
+
+    private Random mRandom;
+
+    @Override
+    protected void setUp() throws Exception {
+	super.setUp();
+	mRandom = new Random(42);
+    }
+
+    /**
+     * A batch drag with a deferred commit must not move the permutation, it is
+     * only sized for single item drags. Single drags either side of it must
+     * still show and commit the right order, including when the first drag is
+     * a batch and the permutation has never been sized
+     */
+    public void testDeferredBatchDrags() {
+	ListDataProvider data = new ListDataProvider.Range(COUNT);
+	DraggableGenericAdapter adapter = new DraggableGenericAdapter(getContext(), data,
+		android.R.layout.simple_list_item_1, new String[] { "id" }, new int[] { android.R.id.text1 },
+		android.R.drawable.ic_menu_more, android.R.drawable.ic_menu_add);
+	adapter.setDeferCommit(true);
+	ArrayList<Long> expected = toList(data.getIds());
+
+	for (int drag = 0; drag < 200; drag++) {
+	    if (drag % 2 == 1) {
+		int start = mRandom.nextInt(COUNT);
+		int hover = start;
+		adapter.setMoveStart(start);
+		for (int i = 0; i < 5; i++) {
+		    hover = mRandom.nextInt(COUNT);
+		    adapter.move(hover);
+		}
+		adapter.setMoveEnd();
+		expected.add(hover, expected.remove(start));
+	    } else {
+		TreeSet<Integer> selection = new TreeSet<Integer>();
+		while (selection.size() < 3) {
+		    selection.add(mRandom.nextInt(COUNT));
+		}
+		for (int position : selection) {
+		    adapter.setSelected(position, true);
+		}
+		adapter.setMoveStart(selection.first());
+		int target = 0;
+		for (int i = 0; i < 5; i++) {
+		    target = mRandom.nextInt(COUNT - selection.size() + 1);
+		    adapter.move(target);
+		}
+		adapter.setMoveEnd();
+		adapter.clearSelection();
+
+		ArrayList<Long> moved = new ArrayList<Long>();
+		for (int position : selection.descendingSet()) {
+		    moved.add(0, expected.remove(position));
+		}
+		expected.addAll(target, moved);
+	    }
+	    assertEquals(expected, toList(data.getIds()));
+	}
+    }
+
+    private static ArrayList<Long> toList(long[] ids) {
+	ArrayList<Long> list = new ArrayList<Long>();
+	for (long id : ids) {
+	    list.add(id);
+	}
+	return list;
+    }
+
+}
@@ -0,0 +1,83 @@
+package com.ctrlb.draggablelist;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * Checks the diff used by the diffed reload finds a longest common
+ * subsequence, and the id index finds the items
+ */
+public class IdDiffTest extends TestCase {
+
+    public void testIdenticalListsMatchEverything() {
+	long[] ids = { 5, 3, 9, 1 };
+	int[] match = IdDiff.match(ids, ids.clone());
+	for (int i = 0; i < ids.length; i++) {
+	    assertEquals(i, match[i]);
+	}
+    }
+
+    public void testInsertAndRemove() {
+	int[] match = IdDiff.match(new long[] { 1, 2, 3, 4 }, new long[] { 1, 3, 7, 4 });
+	assertEquals(0, match[0]);
+	assertEquals(2, match[1]);
+	assertEquals(-1, match[2]);
+	assertEquals(3, match[3]);
+    }
+
+    public void testRandomListsFindLongestCommonSubsequence() {
+	Random random = new Random(7);
+	for (int run = 0; run < 2000; run++) {
+	    long[] a = randomIds(random, random.nextInt(40));
+	    long[] b = randomIds(random, random.nextInt(40));
+	    int[] match = IdDiff.match(a, b);
+
+	    int matched = 0;
+	    int last = -1;
+	    for (int i = 0; i < b.length; i++) {
+		if (match[i] == -1)
+		    continue;
+		assertTrue(match[i] > last);
+		assertEquals(a[match[i]], b[i]);
+		last = match[i];
+		matched++;
+	    }
+	    assertEquals(lcsLength(a, b), matched);
+	}
+    }
+
+    public void testIdIndex() {
+	ListDataProvider.Range data = new ListDataProvider.Range(100);
+	data.moveRange(10, 90);
+	IdIndex index = new IdIndex();
+	for (int i = 0; i < 100; i++) {
+	    assertEquals(i, index.get(data, data.getItemId(i)));
+	}
+	assertEquals(-1, index.get(data, 1000));
+
+	data.moveRange(0, 99);
+	index.invalidate();
+	assertEquals(99, index.get(data, 0));
+    }
+
+    private static long[] randomIds(Random random, int count) {
+	long[] ids = new long[count];
+	for (int i = 0; i < count; i++) {
+	    ids[i] = random.nextInt(8);
+	}
+	return ids;
+    }
+
+    private static int lcsLength(long[] a, long[] b) {
+	int[][] lengths = new int[a.length + 1][b.length + 1];
+	for (int i = a.length - 1; i >= 0; i--) {
+	    for (int j = b.length - 1; j >= 0; j--) {
+		lengths[i][j] = a[i] == b[j] ? lengths[i + 1][j + 1] + 1 : Math.max(lengths[i + 1][j],
+			lengths[i][j + 1]);
+	    }
+	}
+	return lengths[0][0];
+    }
+
+}
@@ -0,0 +1,93 @@
+package com.ctrlb.draggablelist;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+
+/**
+ * An in memory data provider for the tests and benchmarks. Each item is its
+ * id. The subclasses support moving a range or a batch with a single call,
+ * and every call made to move the data is counted.
+ * 
+ * @author philip brown
+ * 
+ */
+public class ListDataProvider implements MoveableDataProvider, StableIdDataProvider {
+
+    protected final ArrayList<Long> mIds = new ArrayList<Long>();
+    private final HashMap<String, String> mItem = new HashMap<String, String>();
+    int mCalls;
+
+    public ListDataProvider(int count) {
+	for (int i = 0; i < count; i++) {
+	    mIds.add((long) i);
+	}
+    }
+
+    @Override
+    public HashMap<String, String> getItem(int position) {
+	return mItem;
+    }
+
+    @Override
+    public int getCount() {
+	return mIds.size();
+    }
+
+    @Override
+    public long getItemId(int position) {
+	return mIds.get(position);
+    }
+
+    /**
+     * swaps neighbouring items, as the demo does
+     */
+    @Override
+    public void move(int from, int to) {
+	mCalls++;
+	Collections.swap(mIds, from, to);
+    }
+
+    /**
+     * 
+     * @return the ids in order
+     */
+    long[] getIds() {
+	long[] ids = new long[mIds.size()];
+	for (int i = 0; i < ids.length; i++) {
+	    ids[i] = mIds.get(i);
+	}
+	return ids;
+    }
+
+    public static class Range extends ListDataProvider implements RangeMoveableDataProvider {
+
+	public Range(int count) {
+	    super(count);
+	}
+
+	@Override
+	public void moveRange(int from, int to) {
+	    mCalls++;
+	    mIds.add(to, mIds.remove(from));
+	}
+    }
+
+    public static class Batch extends Range implements BatchMoveableDataProvider {
+
+	public Batch(int count) {
+	    super(count);
+	}
+
+	@Override
+	public void moveBatch(int[] from, int to) {
+	    mCalls++;
+	    ArrayList<Long> moved = new ArrayList<Long>();
+	    for (int i = from.length - 1; i >= 0; i--) {
+		moved.add(0, mIds.remove(from[i]));
+	    }
+	    mIds.addAll(to, moved);
+	}
+    }
+
+}
@@ -0,0 +1,154 @@
+package com.ctrlb.draggablelist;
+
+import java.util.Random;
+import java.util.TreeSet;
+
+import junit.framework.TestCase;
+
+/**
+ * Checks the undo history keeps the latest moves up to its limit, that a new
+ * move stops the undone moves being redone and that the moves of a batch drag
+ * are undone together
+ */
+public class MoveHistoryTest extends TestCase {
+
+    public void testUndoAndRedo() {
+	MoveHistory history = new MoveHistory(10);
+	assertFalse(history.canUndo());
+	history.record(1, 0, 4);
+	history.record(2, 6, 2);
+
+	int index = history.undo();
+	assertEquals(2, history.getId(index));
+	assertEquals(6, history.getFrom(index));
+	assertEquals(2, history.getTo(index));
+	assertTrue(history.canRedo());
+
+	index = history.redo();
+	assertEquals(2, history.getId(index));
+	assertFalse(history.canRedo());
+    }
+
+    public void testNewMoveClearsRedo() {
+	MoveHistory history = new MoveHistory(10);
+	history.record(1, 0, 4);
+	history.record(2, 6, 2);
+	history.undo();
+	history.record(3, 1, 5);
+	assertFalse(history.canRedo());
+	assertEquals(3, history.getId(history.undo()));
+	assertEquals(1, history.getId(history.undo()));
+	assertFalse(history.canUndo());
+    }
+
+    public void testOldestMovesAreForgotten() {
+	MoveHistory history = new MoveHistory(3);
+	for (int i = 0; i < 7; i++) {
+	    history.record(i, i, i + 1);
+	}
+	assertEquals(6, history.getId(history.undo()));
+	assertEquals(5, history.getId(history.undo()));
+	assertEquals(4, history.getId(history.undo()));
+	assertFalse(history.canUndo());
+	assertEquals(4, history.getId(history.redo()));
+    }
+
+    public void testRunIsUndoneTogether() {
+	MoveHistory history = new MoveHistory(10);
+	history.record(1, 0, 4);
+	history.record(2, 6, 2);
+	history.record(3, 7, 3, true);
+	history.record(4, 9, 4, true);
+
+	assertEquals(4, history.getId(history.undo()));
+	assertTrue(history.isNextJoined());
+	assertEquals(3, history.getId(history.undo()));
+	assertTrue(history.isNextJoined());
+	assertEquals(2, history.getId(history.undo()));
+	assertFalse(history.isNextJoined());
+
+	assertEquals(2, history.getId(history.redo()));
+	assertTrue(history.isNextJoined());
+	history.redo();
+	history.redo();
+	assertFalse(history.isNextJoined());
+    }
+
+    public void testOldestRunIsForgottenWhole() {
+	MoveHistory history = new MoveHistory(4);
+	history.record(1, 0, 1);
+	history.record(2, 1, 2, true);
+	history.record(3, 2, 3, true);
+	history.record(4, 3, 4);
+	history.record(5, 4, 5);
+	// the run of three is forgotten together
+	assertEquals(5, history.getId(history.undo()));
+	assertEquals(4, history.getId(history.undo()));
+	assertFalse(history.canUndo());
+
+	// a run longer than the limit is not kept at all
+	history.clear();
+	for (int i = 0; i < 6; i++) {
+	    history.record(i, i, i + 1, i > 0);
+	}
+	assertFalse(history.canUndo());
+    }
+
+    public void testUndoBatchRestoresOrder() {
+	Random random = new Random(42);
+	int count = 30;
+	ListDataProvider.Range data = new ListDataProvider.Range(count);
+	MoveHistory history = new MoveHistory(MoveHistory.DEFAULT_LIMIT);
+	for (int drag = 0; drag < 10; drag++) {
+	    TreeSet<Integer> selection = new TreeSet<Integer>();
+	    while (selection.size() < 4) {
+		selection.add(random.nextInt(count));
+	    }
+	    int[] positions = new int[selection.size()];
+	    int i = 0;
+	    for (int position : selection) {
+		positions[i++] = position;
+	    }
+	    int target = random.nextInt(count - positions.length + 1);
+
+	    int[] items = new int[positions.length];
+	    int[] from = new int[positions.length];
+	    int[] to = new int[positions.length];
+	    int moves = ProviderMoves.splitBatch(positions, target, items, from, to);
+	    for (int m = 0; m < moves; m++) {
+		history.record(data.getItemId(positions[items[m]]), from[m], to[m], m > 0);
+	    }
+	    ProviderMoves.moveBatch(data, positions, target);
+	}
+
+	while (history.canUndo()) {
+	    int index = history.undo();
+	    int from = history.getTo(index);
+	    assertEquals(history.getId(index), data.getItemId(from));
+	    ProviderMoves.move(data, from, history.getFrom(index));
+	}
+	for (int i = 0; i < count; i++) {
+	    assertEquals(i, data.getItemId(i));
+	}
+    }
+
+    public void testUndoRestoresOrder() {
+	ListDataProvider.Range data = new ListDataProvider.Range(8);
+	MoveHistory history = new MoveHistory(5);
+	int[][] moves = { { 0, 5 }, { 7, 1 }, { 3, 4 }, { 6, 0 } };
+	for (int[] move : moves) {
+	    history.record(data.getItemId(move[0]), move[0], move[1]);
+	    ProviderMoves.move(data, move[0], move[1]);
+	}
+	while (history.canUndo()) {
+	    int index = history.undo();
+	    int from = history.getTo(index);
+	    assertEquals(history.getId(index), data.getItemId(from));
+	    ProviderMoves.move(data, from, history.getFrom(index));
+	}
+	for (int i = 0; i < 8; i++) {
+	    assertEquals(i, data.getItemId(i));
+	}
+    }
+
+}
@@ -0,0 +1,125 @@
+package com.ctrlb.draggablelist;
+
+import java.io.File;
+import java.io.IOException;
+
+import junit.framework.TestCase;
+
+/**
+ * Checks the move journal keeps the moves not yet written to the store when
+ * it is opened again, and combines moves of the same item
+ */
+public class MoveJournalTest extends TestCase {
+
+    private File mFile;
+
+    @Override
+    protected void setUp() throws IOException {
+	mFile = File.createTempFile("moves", ".journal");
+	mFile.delete();
+    }
+
+    @Override
+    protected void tearDown() {
+	mFile.delete();
+    }
+
+    public void testPendingMovesSurviveReopen() throws IOException {
+	MoveJournal journal = new MoveJournal(mFile);
+	journal.append(1, 0, 5);
+	journal.append(2, 3, 1);
+	journal.append(3, 7, 2);
+	long last = journal.beginFlush();
+	assertEquals(3, last);
+	journal.append(4, 9, 0);
+	journal.endFlush(true);
+	journal.close();
+
+	journal = new MoveJournal(mFile);
+	long[] ids = new long[4];
+	int[] from = new int[4];
+	int[] to = new int[4];
+	assertEquals(1, journal.readPending(ids, from, to));
+	assertEquals(4, ids[0]);
+	assertEquals(9, from[0]);
+	assertEquals(0, to[0]);
+	journal.close();
+    }
+
+    public void testMovesOfTheSameItemAreCombined() throws IOException {
+	MoveJournal journal = new MoveJournal(mFile);
+	journal.append(1, 0, 5);
+	journal.append(1, 5, 8);
+	assertEquals(1, journal.getPendingCount());
+	journal.append(1, 8, 0);
+	assertEquals(0, journal.getPendingCount());
+
+	// not combined with a move being written
+	journal.append(2, 4, 6);
+	journal.beginFlush();
+	journal.append(2, 6, 1);
+	assertEquals(2, journal.getPendingCount());
+	journal.endFlush(false);
+	journal.close();
+    }
+
+    public void testStoreAheadOfJournal() throws IOException {
+	MoveJournal journal = new MoveJournal(mFile);
+	journal.append(1, 0, 5);
+	journal.append(2, 1, 4);
+	journal.close();
+
+	// written to the store but killed before the journal was updated
+	journal = new MoveJournal(mFile);
+	assertEquals(2, journal.getPendingCount());
+	journal.markFlushed(2);
+	assertEquals(0, journal.getPendingCount());
+	journal.close();
+    }
+
+    public void testNewJournalFollowsStore() throws IOException {
+	// the journal was lost after the store had 40 moves
+	MoveJournal journal = new MoveJournal(mFile);
+	journal.markFlushed(40);
+	journal.append(1, 0, 5);
+	assertEquals(1, journal.getPendingCount());
+	assertEquals(41, journal.beginFlush());
+	journal.endFlush(true);
+	journal.close();
+
+	journal = new MoveJournal(mFile);
+	assertEquals(41, journal.getFlushedSequence());
+	journal.markFlushed(41);
+	journal.append(2, 3, 1);
+	assertEquals(1, journal.getPendingCount());
+	journal.close();
+    }
+
+    public void testGrowKeepsMoves() throws IOException {
+	MoveJournal journal = new MoveJournal(mFile);
+	int count = MoveJournal.DEFAULT_CAPACITY * 3 + 10;
+	for (int i = 0; i < 200; i++) {
+	    journal.append(i, i, i + 1);
+	}
+	journal.markFlushed(150);
+	for (int i = 200; i < count; i++) {
+	    journal.append(i, i, i + 1);
+	}
+	journal.close();
+
+	journal = new MoveJournal(mFile);
+	int pending = count - 150;
+	assertEquals(pending, journal.getPendingCount());
+	long[] ids = new long[pending];
+	int[] from = new int[pending];
+	int[] to = new int[pending];
+	journal.readPending(ids, from, to);
+	for (int i = 0; i < pending; i++) {
+	    assertEquals(150 + i, ids[i]);
+	    assertEquals(150 + i, from[i]);
+	    assertEquals(151 + i, to[i]);
+	}
+	journal.close();
+    }
+
+}
@@ -0,0 +1,160 @@
+package com.ctrlb.draggablelist;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class OrderKeyTest extends TestCase {
+
+    public void testBetweenUnbounded() {
+	String key = OrderKey.between(null, null);
+	assertTrue(key.length() > 0);
+	assertTrue(OrderKey.between(null, key).compareTo(key) < 0);
+	assertTrue(OrderKey.between(key, null).compareTo(key) > 0);
+    }
+
+    public void testBetweenAdjacentDigits() {
+	assertBetween("1", "2");
+	assertBetween("A", "B");
+	assertBetween("y", "z");
+	assertBetween("z", null);
+	assertBetween(null, "1");
+	assertBetween("1", "11");
+	assertBetween("101", "11");
+	assertBetween("zzz", null);
+	assertBetween(null, "0001");
+    }
+
+    public void testBetweenRejectsBadKeys() {
+	try {
+	    OrderKey.between("B", "A");
+	    fail("keys out of order");
+	} catch (IllegalArgumentException e) {
+	}
+	try {
+	    OrderKey.between("A", "A");
+	    fail("keys equal");
+	} catch (IllegalArgumentException e) {
+	}
+	try {
+	    OrderKey.between("A0", null);
+	    fail("key ends in 0");
+	} catch (IllegalArgumentException e) {
+	}
+	try {
+	    OrderKey.between("A-", null);
+	    fail("bad character");
+	} catch (IllegalArgumentException e) {
+	}
+    }
+
+    /** always moving an item to the top of the list */
+    public void testInsertAtStart() {
+	String first = OrderKey.between(null, null);
+	for (int i = 0; i < 10000; i++) {
+	    String key = OrderKey.between(null, first);
+	    assertTrue(key.compareTo(first) < 0);
+	    first = key;
+	}
+	// each key only needs a digit more once the first digit runs out
+	assertTrue(first.length() < 10000 / 30);
+    }
+
+    /** always moving an item to the bottom of the list */
+    public void testInsertAtEnd() {
+	String last = OrderKey.between(null, null);
+	for (int i = 0; i < 10000; i++) {
+	    String key = OrderKey.between(last, null);
+	    assertTrue(key.compareTo(last) > 0);
+	    last = key;
+	}
+	assertTrue(last.length() < 10000 / 30);
+    }
+
+    /** always moving an item to just after the first item */
+    public void testInsertAfterSameKey() {
+	String before = OrderKey.between(null, null);
+	String after = OrderKey.between(before, null);
+	for (int i = 0; i < 1000; i++) {
+	    String key = OrderKey.between(before, after);
+	    assertTrue(key.compareTo(before) > 0);
+	    assertTrue(key.compareTo(after) < 0);
+	    after = key;
+	}
+	// halving the gap each time adds a digit about every 6 inserts
+	assertTrue(after.length() <= 1000 / 5 + 2);
+	assertTrue(OrderKey.needsRebalance(after, OrderKey.DEFAULT_MAX_LENGTH));
+    }
+
+    /** moving items back and forth between the same two neighbours */
+    public void testInsertAlternating() {
+	String before = OrderKey.between(null, null);
+	String after = OrderKey.between(before, null);
+	for (int i = 0; i < 1000; i++) {
+	    String key = OrderKey.between(before, after);
+	    assertTrue(key.compareTo(before) > 0);
+	    assertTrue(key.compareTo(after) < 0);
+	    if (i % 2 == 0) {
+		before = key;
+	    } else {
+		after = key;
+	    }
+	}
+    }
+
+    /** random moves in a list keep the keys in the same order as the list */
+    public void testRandomMoves() {
+	Random random = new Random(42);
+	ArrayList<String> keys = new ArrayList<String>();
+	String[] spread = OrderKey.spread(200);
+	for (String key : spread) {
+	    keys.add(key);
+	}
+
+	for (int i = 0; i < 20000; i++) {
+	    int from = random.nextInt(keys.size());
+	    int to = random.nextInt(keys.size());
+	    keys.remove(from);
+	    String before = to > 0 ? keys.get(to - 1) : null;
+	    String after = to < keys.size() ? keys.get(to) : null;
+	    keys.add(to, OrderKey.between(before, after));
+	}
+
+	for (int i = 1; i < keys.size(); i++) {
+	    assertTrue(keys.get(i - 1).compareTo(keys.get(i)) < 0);
+	}
+    }
+
+    public void testSpread() {
+	assertEquals(0, OrderKey.spread(0).length);
+
+	int[] counts = { 1, 2, 61, 62, 63, 5000, 100000 };
+	for (int count : counts) {
+	    String[] keys = OrderKey.spread(count);
+	    assertEquals(count, keys.length);
+	    for (int i = 0; i < keys.length; i++) {
+		assertFalse(keys[i].endsWith("0"));
+		assertFalse(OrderKey.needsRebalance(keys[i], 3));
+		if (i > 0) {
+		    assertTrue(keys[i - 1].compareTo(keys[i]) < 0);
+		}
+	    }
+	    // there is room before the first and after the last key
+	    OrderKey.between(null, keys[0]);
+	    OrderKey.between(keys[keys.length - 1], null);
+	}
+    }
+
+    private static void assertBetween(String before, String after) {
+	String key = OrderKey.between(before, after);
+	assertFalse(key.endsWith("0"));
+	if (before != null) {
+	    assertTrue(key + " after " + before, key.compareTo(before) > 0);
+	}
+	if (after != null) {
+	    assertTrue(key + " before " + after, key.compareTo(after) < 0);
+	}
+    }
+
+}
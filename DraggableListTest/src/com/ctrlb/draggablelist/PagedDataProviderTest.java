@@ -0,0 +1,107 @@
+package com.ctrlb.draggablelist;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import junit.framework.TestCase;
+
+/**
+ * Checks rebalancing the keys of a paged provider keeps the order of the rows
+ * in a store that reads them sorted by key. Creates a
+ * {@link PagedDataProvider}, which uses a {@link android.os.Handler}, so it
+ * runs on a device
+ */
+public class PagedDataProviderTest extends TestCase {
+
+    private static final int COUNT = 40;
+    private static final int PAGE_SIZE = 10;
+
+    public void testRebalanceAfterFrontInserts() {
+	SortedStoreProvider provider = new SortedStoreProvider();
+	// each row inserted in front of the last, so the keys grow longer
+	String first = null;
+	for (int i = 0; i < COUNT; i++) {
+	    first = OrderKey.between(null, first);
+	    provider.mStore.add(new OrderedRow(i, first, new HashMap<String, String>()));
+	}
+	List<Long> before = provider.getStoreIds();
+
+	provider.rebalance();
+
+	assertEquals(before, provider.getStoreIds());
+	HashSet<String> keys = new HashSet<String>();
+	for (OrderedRow row : provider.mStore) {
+	    assertTrue(keys.add(row.orderKey));
+	    assertTrue(row.orderKey.length() < OrderKey.DEFAULT_MAX_LENGTH);
+	}
+	assertEquals(1, provider.mWrites);
+    }
+
+    /**
+     * Keeps the rows in memory and reads them sorted by key, as a database
+     * query ordered by the key column would
+     */
+    private static class SortedStoreProvider extends PagedDataProvider {
+
+	final ArrayList<OrderedRow> mStore = new ArrayList<OrderedRow>();
+	int mWrites;
+
+	SortedStoreProvider() {
+	    super(PAGE_SIZE, DEFAULT_MAX_PAGES, new Executor() {
+
+		@Override
+		public void execute(Runnable command) {
+		    command.run();
+		}
+	    });
+	}
+
+	List<Long> getStoreIds() {
+	    ArrayList<Long> ids = new ArrayList<Long>();
+	    for (OrderedRow row : loadRows(0, mStore.size())) {
+		ids.add(row.id);
+	    }
+	    return ids;
+	}
+
+	@Override
+	protected int loadCount() {
+	    return mStore.size();
+	}
+
+	@Override
+	protected List<OrderedRow> loadRows(int offset, int limit) {
+	    ArrayList<OrderedRow> sorted = new ArrayList<OrderedRow>(mStore);
+	    Collections.sort(sorted, new Comparator<OrderedRow>() {
+
+		@Override
+		public int compare(OrderedRow a, OrderedRow b) {
+		    return a.orderKey.compareTo(b.orderKey);
+		}
+	    });
+	    int end = Math.min(offset + limit, sorted.size());
+	    return new ArrayList<OrderedRow>(sorted.subList(Math.min(offset, end), end));
+	}
+
+	@Override
+	protected void saveOrderKey(long id, String orderKey) {
+	    for (OrderedRow row : mStore) {
+		if (row.id == id) {
+		    row.orderKey = orderKey;
+		}
+	    }
+	}
+
+	@Override
+	protected void saveOrderKeys(long[] ids, String[] orderKeys) {
+	    mWrites++;
+	    super.saveOrderKeys(ids, orderKeys);
+	}
+    }
+
+}
@@ -0,0 +1,204 @@
+package com.ctrlb.draggablelist;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Times the parts of a drag that do not need a device: moving the data
+ * provider over long distances, the moves a deferred drag makes in memory,
+ * formatting numbers in the bind loop and diffing ids for a reload. The
+ * inputs come from fixed seeds and each benchmark is warmed up before it is
+ * measured, so runs on the same machine can be compared. Run from the
+ * command line with the library and test classes on the classpath:
+ * 
+ * <pre>
+ * java -cp bin/classes:../DraggableList/bin/classes com.ctrlb.draggablelist.ReorderBenchmark
+ * </pre>
+ * 
+ * @author philip brown
+ * 
+ */
+public class ReorderBenchmark {
+
+    private static final int WARMUP_RUNS = 5;
+    private static final int RUNS = 15;
+    private static final int COUNT = 10000;
+
+    /** stops the work being optimised away */
+    static long sSink;
+
+    abstract static class Benchmark {
+
+	final String mName;
+	/** the operations done by each run */
+	final int mOperations;
+
+	Benchmark(String name, int operations) {
+	    mName = name;
+	    mOperations = operations;
+	}
+
+	/** called before each run, not timed */
+	void setUp() {
+	}
+
+	abstract void run();
+    }
+
+    public static void main(String[] args) {
+	Benchmark[] benchmarks = {
+
+	new Benchmark("provider move stepwise, 1000 rows", 100) {
+
+	    ListDataProvider mData;
+
+	    @Override
+	    void setUp() {
+		mData = new ListDataProvider(COUNT);
+	    }
+
+	    @Override
+	    void run() {
+		for (int i = 0; i < mOperations; i++) {
+		    ProviderMoves.move(mData, i, i + 1000);
+		}
+	    }
+	},
+
+	new Benchmark("provider moveRange, 1000 rows", 10000) {
+
+	    ListDataProvider mData;
+
+	    @Override
+	    void setUp() {
+		mData = new ListDataProvider.Range(COUNT);
+	    }
+
+	    @Override
+	    void run() {
+		for (int i = 0; i < mOperations; i++) {
+		    int from = i % (COUNT - 1000);
+		    ProviderMoves.move(mData, from, from + 1000);
+		}
+	    }
+	},
+
+	new Benchmark("provider moveBatch by moveRange, 50 of 10000", 10) {
+
+	    ListDataProvider mData;
+	    int[] mPositions;
+
+	    @Override
+	    void setUp() {
+		mData = new ListDataProvider.Range(COUNT);
+		mPositions = randomPositions(new Random(1), 50, COUNT);
+	    }
+
+	    @Override
+	    void run() {
+		for (int i = 0; i < mOperations; i++) {
+		    ProviderMoves.moveBatch(mData, mPositions, i * 100);
+		}
+	    }
+	},
+
+	new Benchmark("deferred drag, moves of up to 20 rows", 1000) {
+
+	    PositionPermutation mPermutation = new PositionPermutation();
+	    Random mRandom;
+
+	    @Override
+	    void setUp() {
+		mRandom = new Random(2);
+	    }
+
+	    @Override
+	    void run() {
+		// a fast drag moves up to a screen of rows each frame
+		mPermutation.reset(COUNT);
+		int hover = COUNT / 2;
+		for (int i = 0; i < mOperations; i++) {
+		    int next = Math.max(0, Math.min(COUNT - 1, hover + mRandom.nextInt(41) - 20));
+		    mPermutation.move(hover, next);
+		    hover = next;
+		}
+		sSink += mPermutation.get(hover);
+	    }
+	},
+
+	new Benchmark("bind loop, 20 number fields", 100000) {
+
+	    char[] mBuffer = new char[20];
+
+	    @Override
+	    void run() {
+		long sum = 0;
+		for (int row = 0; row < mOperations / 20; row++) {
+		    for (int field = 0; field < 20; field++) {
+			sum += NumberFormatter.formatLong(row * 7919L + field, mBuffer);
+		    }
+		}
+		sSink += sum;
+	    }
+	},
+
+	new Benchmark("diff 10000 ids, 100 edits", 1) {
+
+	    long[] mOld;
+	    long[] mNew;
+
+	    @Override
+	    void setUp() {
+		Random random = new Random(3);
+		mOld = new long[COUNT];
+		for (int i = 0; i < COUNT; i++) {
+		    mOld[i] = i;
+		}
+		mNew = mOld.clone();
+		for (int i = 0; i < 100; i++) {
+		    mNew[random.nextInt(COUNT)] = COUNT + i;
+		}
+	    }
+
+	    @Override
+	    void run() {
+		sSink += IdDiff.match(mOld, mNew).length;
+	    }
+	} };
+
+	for (Benchmark benchmark : benchmarks) {
+	    long[] times = new long[RUNS];
+	    for (int run = -WARMUP_RUNS; run < RUNS; run++) {
+		benchmark.setUp();
+		long start = System.nanoTime();
+		benchmark.run();
+		long time = System.nanoTime() - start;
+		if (run >= 0) {
+		    times[run] = time;
+		}
+	    }
+	    Arrays.sort(times);
+	    System.out.printf("%-45s %12.1f ns/op (median), %12.1f ns/op (min)%n", benchmark.mName,
+		    (double) times[RUNS / 2] / benchmark.mOperations, (double) times[0] / benchmark.mOperations);
+	}
+    }
+
+    private static int[] randomPositions(Random random, int count, int size) {
+	boolean[] chosen = new boolean[size];
+	int[] positions = new int[count];
+	for (int i = 0; i < count;) {
+	    int position = random.nextInt(size);
+	    if (!chosen[position]) {
+		chosen[position] = true;
+		i++;
+	    }
+	}
+	for (int i = 0, j = 0; i < size; i++) {
+	    if (chosen[i]) {
+		positions[j++] = i;
+	    }
+	}
+	return positions;
+    }
+
+}
@@ -0,0 +1,135 @@
+package com.ctrlb.draggablelist;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.TreeSet;
+
+import junit.framework.TestCase;
+
+/**
+ * Checks random drag sequences leave the data in the same order as removing
+ * each item and inserting it where it was dropped, for each kind of data
+ * provider and for deferred drags
+ */
+public class ReorderTest extends TestCase {
+
+    private static final int COUNT = 60;
+    private static final int DRAGS = 2000;
+
+    private Random mRandom;
+
+    @Override
+    protected void setUp() throws Exception {
+	super.setUp();
+	mRandom = new Random(42);
+    }
+
+    public void testRandomDragsStepwise() {
+	checkRandomDrags(new ListDataProvider(COUNT));
+    }
+
+    public void testRandomDragsRange() {
+	checkRandomDrags(new ListDataProvider.Range(COUNT));
+    }
+
+    public void testRangeMoveIsOneCall() {
+	ListDataProvider data = new ListDataProvider.Range(COUNT);
+	assertEquals(1, ProviderMoves.move(data, 3, COUNT - 1));
+	assertEquals(1, data.mCalls);
+
+	data = new ListDataProvider(COUNT);
+	assertEquals(COUNT - 4, ProviderMoves.move(data, 3, COUNT - 1));
+	assertEquals(COUNT - 4, data.mCalls);
+    }
+
+    /**
+     * A deferred drag moves the dragged item around the permutation many
+     * times, the order shown must match the single move committed at the end
+     */
+    public void testRandomDeferredDrags() {
+	PositionPermutation permutation = new PositionPermutation();
+	ListDataProvider data = new ListDataProvider.Range(COUNT);
+	ArrayList<Long> expected = toList(data.getIds());
+
+	for (int drag = 0; drag < DRAGS; drag++) {
+	    permutation.reset(COUNT);
+	    int start = mRandom.nextInt(COUNT);
+	    int hover = start;
+	    int steps = 1 + mRandom.nextInt(20);
+	    for (int i = 0; i < steps; i++) {
+		int next = mRandom.nextInt(COUNT);
+		permutation.move(hover, next);
+		hover = next;
+	    }
+
+	    expected.add(hover, expected.remove(start));
+	    long[] before = data.getIds();
+	    for (int p = 0; p < COUNT; p++) {
+		assertEquals((long) expected.get(p), before[permutation.get(p)]);
+	    }
+
+	    ProviderMoves.move(data, start, hover);
+	    assertEquals(expected, toList(data.getIds()));
+	}
+    }
+
+    public void testRandomBatchMovesStepwise() {
+	checkRandomBatches(new ListDataProvider(COUNT));
+    }
+
+    public void testRandomBatchMovesRange() {
+	checkRandomBatches(new ListDataProvider.Range(COUNT));
+    }
+
+    public void testRandomBatchMovesBatch() {
+	ListDataProvider data = new ListDataProvider.Batch(COUNT);
+	checkRandomBatches(data);
+	assertEquals(DRAGS, data.mCalls);
+    }
+
+    private void checkRandomDrags(ListDataProvider data) {
+	ArrayList<Long> expected = toList(data.getIds());
+	for (int drag = 0; drag < DRAGS; drag++) {
+	    int from = mRandom.nextInt(COUNT);
+	    int to = mRandom.nextInt(COUNT);
+	    expected.add(to, expected.remove(from));
+	    ProviderMoves.move(data, from, to);
+	    assertEquals(expected, toList(data.getIds()));
+	}
+    }
+
+    private void checkRandomBatches(ListDataProvider data) {
+	ArrayList<Long> expected = toList(data.getIds());
+	for (int drag = 0; drag < DRAGS; drag++) {
+	    TreeSet<Integer> selection = new TreeSet<Integer>();
+	    int selected = 1 + mRandom.nextInt(COUNT / 3);
+	    while (selection.size() < selected) {
+		selection.add(mRandom.nextInt(COUNT));
+	    }
+	    int[] positions = new int[selected];
+	    int i = 0;
+	    for (int position : selection) {
+		positions[i++] = position;
+	    }
+	    int target = mRandom.nextInt(COUNT - selected + 1);
+
+	    ArrayList<Long> moved = new ArrayList<Long>();
+	    for (int j = positions.length - 1; j >= 0; j--) {
+		moved.add(0, expected.remove(positions[j]));
+	    }
+	    expected.addAll(target, moved);
+
+	    ProviderMoves.moveBatch(data, positions, target);
+	    assertEquals(expected, toList(data.getIds()));
+	}
+    }
+
+    private static ArrayList<Long> toList(long[] ids) {
+	ArrayList<Long> list = new ArrayList<Long>();
+	for (long id : ids) {
+	    list.add(id);
+	}
+	return list;
+    }
+
+}
@@ -0,0 +1,245 @@
+package com.ctrlb.draggablelist;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import junit.framework.TestCase;
+
+/**
+ * Checks the write-behind provider writes every move to the store once,
+ * tries again after a failed write, and replays the moves the store does not
+ * have when it is opened again
+ */
+public class WriteBehindDataProviderTest extends TestCase {
+
+    private static final int COUNT = 20;
+    private static final long TIMEOUT_MS = 5000;
+
+    private File mFile;
+    private ScheduledExecutorService mExecutor;
+
+    @Override
+    protected void setUp() throws IOException {
+	mFile = File.createTempFile("moves", ".journal");
+	mFile.delete();
+	mExecutor = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    @Override
+    protected void tearDown() {
+	mExecutor.shutdownNow();
+	mFile.delete();
+    }
+
+    public void testMovesAreWritten() throws Exception {
+	Store store = new Store(COUNT);
+	ListDataProvider data = new ListDataProvider.Range(COUNT);
+	// only written when flushed, so the moves are written together
+	StoreProvider provider = new StoreProvider(data, store, 60000);
+	assertEquals(0, provider.replay());
+
+	provider.moveRange(0, 5);
+	provider.moveRange(5, 9);
+	provider.moveRange(3, 1);
+	awaitWritten(provider);
+
+	assertEquals(toList(data.getIds()), store.mIds);
+	assertEquals(0, provider.getPendingCount());
+	// the two moves of the first item were combined
+	assertEquals(2, store.mMoves);
+    }
+
+    public void testFailedWriteIsTriedAgain() throws Exception {
+	Store store = new Store(COUNT);
+	store.mFailures = 3;
+	ListDataProvider data = new ListDataProvider.Range(COUNT);
+	StoreProvider provider = new StoreProvider(data, store);
+	provider.replay();
+
+	provider.moveRange(2, 7);
+	provider.moveRange(10, 0);
+	awaitWritten(provider);
+
+	assertEquals(toList(data.getIds()), store.mIds);
+	assertEquals(0, store.mFailures);
+	assertTrue(store.mWrites >= 4);
+	assertEquals(3, provider.mErrors);
+    }
+
+    public void testUnwrittenMovesAreReplayed() throws Exception {
+	Store store = new Store(COUNT);
+	ListDataProvider data = new ListDataProvider.Range(COUNT);
+	StoreProvider provider = new StoreProvider(data, store, 60000);
+	provider.replay();
+	provider.moveRange(4, 12);
+	provider.moveRange(0, 19);
+	// killed before the moves were written
+	mExecutor.shutdownNow();
+	mExecutor = Executors.newSingleThreadScheduledExecutor();
+
+	ListDataProvider reloaded = new ListDataProvider.Range(COUNT);
+	provider = new StoreProvider(reloaded, store);
+	assertEquals(2, provider.replay());
+	assertEquals(toList(data.getIds()), toList(reloaded.getIds()));
+	awaitWritten(provider);
+	assertEquals(toList(data.getIds()), store.mIds);
+    }
+
+    public void testLostJournalKeepsNewMoves() throws Exception {
+	Store store = new Store(COUNT);
+	store.mLastSequence = 40;
+	ListDataProvider data = new ListDataProvider.Range(COUNT);
+	StoreProvider provider = new StoreProvider(data, store);
+	assertEquals(0, provider.replay());
+
+	provider.moveRange(1, 6);
+	awaitWritten(provider);
+	assertEquals(toList(data.getIds()), store.mIds);
+	assertEquals(41, store.mLastSequence);
+    }
+
+    public void testTypedColumnsAreForwarded() throws Exception {
+	TypedListDataProvider data = new TypedListDataProvider(COUNT);
+	WriteBehindDataProvider.Typed provider = new WriteBehindDataProvider.Typed(data, mFile, mExecutor, 0) {
+
+	    @Override
+	    protected long getLastSequence() {
+		return 0;
+	    }
+
+	    @Override
+	    protected void writeMoves(long[] ids, int[] from, int[] to, int count, long lastSequence) {
+	    }
+
+	    @Override
+	    protected void onError(String message, IOException e) {
+		fail(message);
+	    }
+	};
+	assertTrue(provider instanceof StableIdDataProvider);
+	provider.moveRange(0, 3);
+	assertEquals(0, provider.getColumnIndex("id"));
+	assertEquals(0L, provider.getLong(3, 0));
+	assertEquals(1L, provider.getLong(0, 0));
+    }
+
+    private void awaitWritten(WriteBehindDataProvider provider) throws InterruptedException {
+	provider.flush();
+	long end = System.currentTimeMillis() + TIMEOUT_MS;
+	while (provider.getPendingCount() > 0) {
+	    assertTrue("moves not written", System.currentTimeMillis() < end);
+	    Thread.sleep(5);
+	}
+    }
+
+    private static ArrayList<Long> toList(long[] ids) {
+	ArrayList<Long> list = new ArrayList<Long>();
+	for (long id : ids) {
+	    list.add(id);
+	}
+	return list;
+    }
+
+    /**
+     * The data store, written on the background thread
+     */
+    private static class Store {
+
+	final ArrayList<Long> mIds = new ArrayList<Long>();
+	volatile long mLastSequence;
+	volatile int mFailures;
+	volatile int mWrites;
+	volatile int mMoves;
+
+	Store(int count) {
+	    for (int i = 0; i < count; i++) {
+		mIds.add((long) i);
+	    }
+	}
+
+	synchronized void write(long[] ids, int[] from, int[] to, int count, long lastSequence) throws IOException {
+	    mWrites++;
+	    if (mFailures > 0) {
+		mFailures--;
+		throw new IOException("store not available");
+	    }
+	    for (int i = 0; i < count; i++) {
+		assertEquals(ids[i], (long) mIds.get(from[i]));
+		mIds.add(to[i], mIds.remove(from[i]));
+	    }
+	    mMoves += count;
+	    mLastSequence = lastSequence;
+	}
+    }
+
+    private class StoreProvider extends WriteBehindDataProvider {
+
+	private final Store mStore;
+	/** the errors reported, not logged so the test runs on the JVM */
+	volatile int mErrors;
+
+	StoreProvider(MoveableDataProvider dataProvider, Store store) throws IOException {
+	    this(dataProvider, store, 0);
+	}
+
+	StoreProvider(MoveableDataProvider dataProvider, Store store, long flushDelay) throws IOException {
+	    super(dataProvider, mFile, mExecutor, flushDelay);
+	    mStore = store;
+	}
+
+	@Override
+	protected long getLastSequence() {
+	    return mStore.mLastSequence;
+	}
+
+	@Override
+	protected void writeMoves(long[] ids, int[] from, int[] to, int count, long lastSequence)
+		throws IOException {
+	    mStore.write(ids, from, to, count, lastSequence);
+	}
+
+	@Override
+	protected void onError(String message, IOException e) {
+	    mErrors++;
+	}
+    }
+
+    /**
+     * Reads the id of each item as a long column
+     */
+    private static class TypedListDataProvider extends ListDataProvider.Range implements TypedDataProvider {
+
+	TypedListDataProvider(int count) {
+	    super(count);
+	}
+
+	@Override
+	public int getColumnIndex(String key) {
+	    return 0;
+	}
+
+	@Override
+	public int getColumnType(int column) {
+	    return TYPE_LONG;
+	}
+
+	@Override
+	public int getInt(int position, int column) {
+	    return (int) getLong(position, column);
+	}
+
+	@Override
+	public long getLong(int position, int column) {
+	    return getItemId(position);
+	}
+
+	@Override
+	public CharSequence getCharSequence(int position, int column) {
+	    return String.valueOf(getLong(position, column));
+	}
+    }
+
+}